@@ -0,0 +1,23 @@
+package dk.darknight.scientist.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate is
+ * reported next to the throughput. Takes the same arguments as the JMH
+ * command line, e.g. a regular expression selecting the benchmarks to run.
+ */
+public final class BenchmarkRunner {
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build())
+				.run();
+	}
+}
@@ -0,0 +1,169 @@
+package dk.darknight.scientist.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+import dk.darknight.scientist.IExperiment;
+import dk.darknight.scientist.IResultPublisher;
+import dk.darknight.scientist.LogPublisher;
+import dk.darknight.scientist.MismatchException;
+import dk.darknight.scientist.Result;
+import dk.darknight.scientist.Scientist;
+import dk.darknight.scientist.functions.ExperimentFunction;
+
+/**
+ * Measures the overhead of {@link Scientist#science(String, ExperimentFunction)}
+ * over calling the control directly.
+ * <p>
+ * Run with {@link BenchmarkRunner} to report the allocation rate next to the
+ * throughput.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScienceBenchmark {
+	/** The publishers the enabled scenarios are measured with. */
+	public enum Publisher {
+		LOG, NO_OP
+	}
+
+	private static final String[] CANDIDATE_NAMES = { "candidate0", "candidate1", "candidate2", "candidate3",
+			"candidate4", "candidate5", "candidate6", "candidate7" };
+
+	private static final IResultPublisher NO_OP_PUBLISHER = new IResultPublisher() {
+		@Override
+		public <T, TClean> void publish(Result<T, TClean> result) {
+		}
+	};
+
+	private static final Supplier<Integer> CONTROL = Suppliers.ofInstance(42);
+
+	private static final Supplier<Integer> CANDIDATE = Suppliers.ofInstance(42);
+
+	private static final Supplier<Integer> MISMATCHING_CANDIDATE = Suppliers.ofInstance(43);
+
+	private static final Supplier<Integer> THROWING_CANDIDATE = new Supplier<Integer>() {
+		@Override
+		public Integer get() {
+			throw new IllegalStateException("Candidate failed");
+		}
+	};
+
+	private static final ExperimentFunction<Integer, Integer> ONE_CANDIDATE = new ExperimentFunction<Integer, Integer>() {
+		@Override
+		public void apply(IExperiment<Integer, Integer> experiment) {
+			experiment.use(CONTROL);
+			experiment.attempt(CANDIDATE);
+		}
+	};
+
+	private static final ExperimentFunction<Integer, Integer> MANY = new ExperimentFunction<Integer, Integer>() {
+		@Override
+		public void apply(IExperiment<Integer, Integer> experiment) {
+			experiment.use(CONTROL);
+			for (String name : CANDIDATE_NAMES) {
+				experiment.attempt(name, CANDIDATE);
+			}
+		}
+	};
+
+	private static final ExperimentFunction<Integer, Integer> THROWING = new ExperimentFunction<Integer, Integer>() {
+		@Override
+		public void apply(IExperiment<Integer, Integer> experiment) {
+			experiment.use(CONTROL);
+			experiment.attempt(THROWING_CANDIDATE);
+		}
+	};
+
+	private static final ExperimentFunction<Integer, Integer> THROW_ON_MISMATCHES = new ExperimentFunction<Integer, Integer>() {
+		@Override
+		public void apply(IExperiment<Integer, Integer> experiment) {
+			experiment.use(CONTROL);
+			experiment.attempt(MISMATCHING_CANDIDATE);
+			experiment.setThrowOnMismatches(true);
+		}
+	};
+
+	@Param
+	public Publisher publisher;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Scientist.setResultPublisher(publisher == Publisher.LOG ? LogPublisher.DEFAULT : NO_OP_PUBLISHER);
+		Scientist.setEnabled(Suppliers.ofInstance(true));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Scientist.setEnabled(Suppliers.ofInstance(true));
+	}
+
+	/** The baseline: the control without Scientist. */
+	@Benchmark
+	public Integer direct() {
+		return CONTROL.get();
+	}
+
+	@Benchmark
+	public Integer oneCandidate() {
+		return Scientist.science("one candidate", ONE_CANDIDATE);
+	}
+
+	@Benchmark
+	public Integer manyCandidates() {
+		return Scientist.science("many candidates", CANDIDATE_NAMES.length, MANY);
+	}
+
+	@Benchmark
+	public Integer throwingCandidate() {
+		return Scientist.science("throwing candidate", THROWING);
+	}
+
+	@Benchmark
+	public Object throwOnMismatches() {
+		try {
+			return Scientist.science("throw on mismatches", THROW_ON_MISMATCHES);
+		} catch (MismatchException e) {
+			return e;
+		}
+	}
+
+	/** Scientist disabled, so only the control runs. */
+	@State(Scope.Benchmark)
+	public static class Disabled {
+		@Setup(Level.Trial)
+		public void setUp() {
+			Scientist.setEnabled(Suppliers.ofInstance(false));
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			Scientist.setEnabled(Suppliers.ofInstance(true));
+		}
+	}
+
+	@Benchmark
+	public Integer disabled(Disabled disabled) {
+		return Scientist.science("disabled", ONE_CANDIDATE);
+	}
+}
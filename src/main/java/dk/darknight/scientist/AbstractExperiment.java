@@ -0,0 +1,190 @@
+package dk.darknight.scientist;
+
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.*;
+
+import dk.darknight.scientist.functions.Action;
+import dk.darknight.scientist.functions.DoubleAction;
+import dk.darknight.scientist.functions.DoubleFunction;
+import lombok.NonNull;
+
+/**
+ * The settings shared by the experiment builders.
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ * @param <B>
+ *           The type of the experiment's behaviors
+ */
+abstract class AbstractExperiment<T, TClean, B> implements IExperimentBase<T, TClean> {
+	private final static class DefaultComparator<T> implements Comparator<T> {
+		private static final int EQUAL = 0;
+		private static final int NOT_EQUAL = -1; // False is always -1, regardless of actual result
+
+		@Override
+		public int compare(T o1, T o2) {
+			boolean equal = (o1 == null && o2 == null) || (o1 != null && o1.equals(o2));
+
+			return equal ? EQUAL : NOT_EQUAL;
+		}
+	}
+
+	private static final String CANDIDATE_EXPERIMENT_NAME = "candidate";
+
+	private static final Supplier<Boolean> ALWAYS_RUN = Suppliers.ofInstance(true);
+
+	private static final DoubleAction<Operation, Exception> ALWAYS_THROW = new DoubleAction<Operation, Exception>() {
+		@Override
+		public Void apply(Operation op, Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	};
+
+	private Action<Void> beforeRun;
+	private final Map<String, B> candidates;
+	private final Map<String, Long> candidateTimeoutNanos = new HashMap<>();
+	private Function<T, ?> cleaner;
+	private Comparator<T> comparator = new DefaultComparator<T>();
+
+	private final Map<String, Object> contexts = new HashMap<>();
+	private B control;
+	private final Supplier<Boolean> enabled;
+	private ExperimentGovernor governor;
+	private final List<DoubleFunction<T, T, Boolean>> ignores = new ArrayList<>();
+	private final String name;
+	private OrderingPolicy orderingPolicy = OrderingPolicy.RANDOM;
+	private Supplier<Boolean> runIf = ALWAYS_RUN;
+	private ISampler sampler = Samplers.always();
+	private DoubleAction<Operation, Exception> thrown = ALWAYS_THROW;
+	private boolean throwOnMismatches = false;
+	private Long timeoutNanos;
+
+	protected AbstractExperiment(@NonNull String name, @NonNull Supplier<Boolean> enabled) {
+		this.name = name;
+		this.candidates = new HashMap<String, B>();
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void addContext(@NonNull String key, Object value) {
+		contexts.put(key, value);
+	}
+
+	/** Add a named candidate. */
+	protected void addCandidate(@NonNull String name, @NonNull B candidate) {
+		if (candidates.containsKey(name)) {
+			throw new IllegalArgumentException(MessageFormat
+					.format("You already have a candidate named {0}. Provide a different name for this test.", name));
+		}
+		candidates.put(name, candidate);
+	}
+
+	/** Add the default candidate. */
+	protected void addCandidate(@NonNull B candidate) {
+		if (candidates.containsKey(CANDIDATE_EXPERIMENT_NAME)) {
+			throw new IllegalArgumentException("You have already added a default try. "
+					+ "Give this candidate a new name with the attempt(String, Supplier<T> candidate) overload");
+		}
+		candidates.put(CANDIDATE_EXPERIMENT_NAME, candidate);
+	}
+
+	@Override
+	public void beforeRun(@NonNull Action<Void> action) {
+		this.beforeRun = action;
+	}
+
+	@Override
+	public void clean(@NonNull Function<T, TClean> cleaner) {
+		this.cleaner = cleaner;
+	}
+
+	@Override
+	public void compare(@NonNull Comparator<T> comparator) {
+		this.comparator = comparator;
+	}
+
+	@Override
+	public void ignore(@NonNull DoubleFunction<T, T, Boolean> block) {
+		this.ignores.add(block);
+	}
+
+	@Override
+	public boolean isThrowOnMismatches() {
+		return throwOnMismatches;
+	}
+
+	@Override
+	public void runIf(@NonNull Supplier<Boolean> check) {
+		this.runIf = check;
+	}
+
+	@Override
+	public void sample(@NonNull ISampler sampler) {
+		this.sampler = sampler;
+	}
+
+	/** Set the control behavior. */
+	protected void setControl(@NonNull B control) {
+		this.control = control;
+	}
+
+	@Override
+	public void setGovernor(@NonNull ExperimentGovernor governor) {
+		this.governor = governor;
+	}
+
+	@Override
+	public void setOrderingPolicy(@NonNull OrderingPolicy orderingPolicy) {
+		this.orderingPolicy = orderingPolicy;
+	}
+
+	@Override
+	public void setThrowOnMismatches(boolean throwOnMismatches) {
+		this.throwOnMismatches = throwOnMismatches;
+	}
+
+	@Override
+	public void setTimeout(long timeout, @NonNull TimeUnit unit) {
+		Preconditions.checkArgument(timeout > 0, "timeout must be greater than 0");
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	@Override
+	public void setTimeout(@NonNull String candidateName, long timeout, @NonNull TimeUnit unit) {
+		Preconditions.checkArgument(timeout > 0, "timeout must be greater than 0");
+		candidateTimeoutNanos.put(candidateName, unit.toNanos(timeout));
+	}
+
+	/** Copy the settings collected so far into a new settings object. */
+	protected ExperimentSettings<T, TClean, B> settings() {
+		ExperimentSettings<T, TClean, B> settings = new ExperimentSettings<>();
+		settings.setBeforeRun(beforeRun);
+		settings.setCandidates(candidates);
+		settings.setCandidateTimeoutNanos(candidateTimeoutNanos);
+		settings.setCleaner(cleaner);
+		settings.setComparator(comparator);
+		settings.setContexts(contexts);
+		settings.setControl(control);
+		settings.setEnabled(enabled);
+		settings.setGovernor(governor);
+		settings.setIgnores(ignores);
+		settings.setName(name);
+		settings.setOrderingPolicy(orderingPolicy);
+		settings.setRunIf(runIf);
+		settings.setSampler(sampler);
+		settings.setThrown(thrown);
+		settings.setThrowOnMismatches(throwOnMismatches);
+		settings.setTimeoutNanos(timeoutNanos);
+		return settings;
+	}
+
+	@Override
+	public void thrown(@NonNull DoubleAction<Operation, Exception> block) {
+		this.thrown = block;
+	}
+}
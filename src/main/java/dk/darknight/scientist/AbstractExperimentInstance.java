@@ -0,0 +1,250 @@
+package dk.darknight.scientist;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+import dk.darknight.scientist.functions.Action;
+import dk.darknight.scientist.functions.DoubleAction;
+import dk.darknight.scientist.functions.DoubleFunction;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * The parts of an experiment instance that do not depend on how the behaviors
+ * are executed: deciding whether to run, comparing and publishing.
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ * @param <B>
+ *           The type of the experiment's behaviors
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+abstract class AbstractExperimentInstance<T, TClean, B> {
+	@Value
+	protected static class NamedBehavior<B> {
+		/** Gets the behavior to execute during an experiment. */
+		String name;
+		
+		/** Gets the name of the behavior. */
+		B behavior;
+	}
+
+	protected final static String CONTROL_EXPERIMENT_NAME = "control";
+
+	private final Action<Void> beforeRun;
+	private final Map<String, B> candidates;
+	private final Map<String, Long> candidateTimeoutNanos;
+	private final Function<T, ?> cleaner;
+	private final Comparator<T> comparator;
+	private final Map<String, Object> contexts;
+	private final B control;
+	private final Supplier<Boolean> enabled;
+	private final ExperimentGovernor governor;
+	private final List<DoubleFunction<T, T, Boolean>> ignores;
+	private final String name;
+	private final OrderingPolicy orderingPolicy;
+	private final Supplier<Boolean> runIf;
+	private final ISampler sampler;
+	private final DoubleAction<Operation, Exception> thrown;
+	private final boolean throwOnMismatches;
+	private final long timeoutNanos;
+	/** The behaviors, with the control first. */
+	private final ImmutableList<NamedBehavior<B>> behaviors;
+
+	protected AbstractExperimentInstance(ExperimentSettings<T, TClean, B> settings) {
+		name = settings.getName();
+		candidates = settings.getCandidates();
+		candidateTimeoutNanos = settings.getCandidateTimeoutNanos();
+		beforeRun = settings.getBeforeRun();
+		cleaner = settings.getCleaner();
+		comparator = settings.getComparator();
+		contexts = settings.getContexts();
+		control = settings.getControl();
+		enabled = settings.getEnabled();
+		governor = settings.getGovernor() != null ? settings.getGovernor() : Scientist.getGovernor();
+		ignores = settings.getIgnores();
+		orderingPolicy = settings.getOrderingPolicy();
+		runIf = settings.getRunIf();
+		sampler = settings.getSampler();
+		thrown = settings.getThrown();
+		throwOnMismatches = settings.isThrowOnMismatches();
+		timeoutNanos = settings.getTimeoutNanos() != null ? settings.getTimeoutNanos()
+				: Scientist.getDefaultTimeoutNanos();
+
+		ImmutableList.Builder<NamedBehavior<B>> behaviors = ImmutableList.builder();
+		behaviors.add(new NamedBehavior<>(CONTROL_EXPERIMENT_NAME, settings.getControl()));
+
+		for (Entry<String, B> entry : candidates.entrySet()) {
+			behaviors.add(new NamedBehavior<>(entry.getKey(), entry.getValue()));
+		}
+		this.behaviors = behaviors.build();
+	}
+
+	/**
+	 * Determine whether or not the experiment should run.
+	 * 
+	 * @param contexts
+	 *           the context data of this run
+	 */
+	protected boolean shouldExperimentRun(Map<String, Object> contexts) {
+		try {
+			// Only let the experiment run if at least one candidate (> 1
+			// behaviors) is included. The control is always included behaviors
+			// count.
+			return behaviors.size() > 1 && enabled.get() && runIfAllows() && isSampled(contexts);
+		} catch (Exception e) {
+			thrown.apply(Operation.ENABLED, e);
+			return false;
+		}
+	}
+
+	
+	/** Does {@link #runIf} allow the experiment to run? */
+	private boolean runIfAllows() {
+		try {
+			return runIf.get();
+		} catch (Exception e) {
+			thrown.apply(Operation.RUN_IF, e);
+			return false;
+		}
+	}
+
+	/** Do the global and the experiment's samplers both sample this run? */
+	private boolean isSampled(Map<String, Object> contexts) {
+		try {
+			return Scientist.getSampler().sample(name, contexts) && sampler.sample(name, contexts);
+		} catch (Exception e) {
+			thrown.apply(Operation.SAMPLE, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Does the governor admit this run? Skipped runs are reported to the result
+	 * publisher.
+	 * 
+	 * @param executor
+	 *           the executor the candidates would run on, if any
+	 */
+	protected boolean isAdmitted(IExperimentExecutor executor) {
+		if (governor == null || governor.admit(executor)) {
+			return true;
+		}
+
+		try {
+			Scientist.getResultPublisher().publishSkipped(name);
+		} catch (Exception e) {
+			thrown.apply(Operation.PUBLISH, e);
+		}
+		return false;
+	}
+
+	/** Let the governor, if any, know how long the control took. */
+	protected void recordControlLatency(long nanos) {
+		if (governor != null) {
+			governor.recordControlLatency(nanos);
+		}
+	}
+
+	/**
+	 * Create the task that builds and publishes the result of a run.
+	 * 
+	 * @param observations
+	 * @param observationNames
+	 * @param controlObservation
+	 * @param contexts
+	 *           the context data of this run
+	 * @return a task returning the published result
+	 */
+	protected Publication<T, TClean> publication(final List<? extends Future<Observation<T, TClean>>> observations,
+			final List<String> observationNames, final Observation<T, TClean> controlObservation,
+			final Map<String, Object> contexts) {
+		return new Publication<>(this, observations, observationNames, controlObservation, contexts);
+	}
+
+	/**
+	 * Create the result of a run.
+	 * 
+	 * @param observations
+	 *           the observations, with the control
+	 * @param controlObservation
+	 * @param contexts
+	 *           the context data of this run
+	 */
+	protected Result<T, TClean> newResult(List<Observation<T, TClean>> observations,
+			Observation<T, TClean> controlObservation, Map<String, Object> contexts) {
+		return new Result<T, TClean>(this, observations, controlObservation, contexts);
+	}
+
+	/**
+	 * Publish a run. Experiments that throw on mismatches publish on the calling
+	 * thread, all others are handed to the publishing pipeline once all their
+	 * observations are done.
+	 * 
+	 * @throws MismatchException
+	 *            if the experiment throws on mismatches and the candidates did
+	 *            not match the control
+	 */
+	protected void publish(final Publication<T, TClean> publication) {
+		if (throwOnMismatches) {
+			Result<T, TClean> r = publication.call();
+			if (r != null && r.isMismatched()) {
+				throw new MismatchException(name, r);
+			}
+		} else {
+			final PublishingPipeline pipeline = Scientist.getPublishingPipeline();
+			publication.whenReady(new Runnable() {
+				@Override
+				public void run() {
+					pipeline.submit(publication);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Gets the timeout of a candidate.
+	 * 
+	 * @param candidateName
+	 *           the name of the candidate
+	 * @return the number of nanoseconds the candidate is given to complete
+	 */
+	protected long getTimeoutNanos(String candidateName) {
+		Long candidateTimeout = candidateTimeoutNanos.get(candidateName);
+		return candidateTimeout != null ? candidateTimeout : timeoutNanos;
+	}
+
+	public boolean ignoreMismatchedObservation(Observation<T, TClean> control, Observation<T, TClean> candidate) {
+		if (ignores.isEmpty()) {
+			return false;
+		}
+
+		try {
+			List<DoubleFunction<?, ?, ?>> results = new ArrayList<>();
+			for (DoubleFunction<T, T, Boolean> i : ignores) {
+				if (i.apply(control.getValue(), candidate.getValue())) {
+					results.add(i);
+				}
+			}
+			return !results.isEmpty();
+		} catch (Exception e) {
+			thrown.apply(Operation.IGNORE, e);
+			return false;
+		}
+	}
+
+}
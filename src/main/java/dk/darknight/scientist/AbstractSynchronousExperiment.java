@@ -0,0 +1,62 @@
+package dk.darknight.scientist;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+
+import lombok.NonNull;
+
+/**
+ * The settings shared by the builders of experiments whose behaviors run on an
+ * {@link IExperimentExecutor}.
+ *
+ * @param <I>
+ *           The input type of the experiment
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+abstract class AbstractSynchronousExperiment<I, T, TClean> extends AbstractExperiment<T, TClean, Function<I, T>>
+		implements ISynchronousExperimentBase<T, TClean> {
+	private final int concurrentTasks;
+	private ExecutionMode executionMode = ExecutionMode.CONCURRENT;
+	private IExperimentExecutor executor;
+	private boolean measureResourceUsage;
+
+	protected AbstractSynchronousExperiment(@NonNull String name, @NonNull Supplier<Boolean> enabled,
+			int concurrentTasks) {
+		super(name, enabled);
+		Preconditions.checkArgument(concurrentTasks > 0, "concurrentTasks must be greater than 0");
+		this.concurrentTasks = concurrentTasks;
+	}
+
+	public ExperimentInstance<I, T, TClean> build() {
+		return new ExperimentInstance<>(settings());
+	}
+
+	@Override
+	protected ExperimentSettings<T, TClean, Function<I, T>> settings() {
+		ExperimentSettings<T, TClean, Function<I, T>> settings = super.settings();
+		settings.setConcurrentTasks(concurrentTasks);
+		settings.setExecutionMode(executionMode);
+		settings.setExecutor(executor);
+		settings.setMeasureResourceUsage(measureResourceUsage);
+		return settings;
+	}
+
+	@Override
+	public void setExecutionMode(@NonNull ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	@Override
+	public void setExecutor(@NonNull IExperimentExecutor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void setMeasureResourceUsage(boolean measureResourceUsage) {
+		this.measureResourceUsage = measureResourceUsage;
+	}
+}
@@ -0,0 +1,225 @@
+package dk.darknight.scientist;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * A publisher that merges results into counters per experiment and candidate,
+ * and hands a summary of each experiment to an {@link ISummaryPublisher} at a
+ * fixed interval.
+ * <p>
+ * Results are not kept, apart from the first few mismatched results of each
+ * interval, so memory use does not grow with the number of runs. Counting is
+ * lock-free; a result published while a flush is in progress may be counted
+ * in either interval.
+ * </p>
+ * <p>
+ * Summaries are published on a daemon thread named
+ * {@code scientist-aggregator-N}. Experiments without runs in an interval are
+ * not published.
+ * </p>
+ */
+public class AggregatingPublisher implements IResultPublisher {
+	private static final Logger log = LoggerFactory.getLogger(AggregatingPublisher.class);
+
+	private final ISummaryPublisher downstream;
+	private final int mismatchSamples;
+	private final ScheduledExecutorService scheduler;
+	private final ConcurrentMap<String, ExperimentCounters> experiments = new ConcurrentHashMap<>();
+	private volatile long intervalStartMillis = System.currentTimeMillis();
+
+	/**
+	 * Create a publisher.
+	 * 
+	 * @param downstream
+	 *           the publisher of the summaries
+	 * @param interval
+	 *           the time between summaries
+	 * @param unit
+	 *           the unit of the interval
+	 * @param mismatchSamples
+	 *           the number of mismatched results kept per experiment and
+	 *           interval
+	 */
+	public AggregatingPublisher(@NonNull ISummaryPublisher downstream, long interval, @NonNull TimeUnit unit,
+			int mismatchSamples) {
+		Preconditions.checkArgument(interval > 0, "interval must be greater than 0");
+		Preconditions.checkArgument(mismatchSamples >= 0, "mismatchSamples must not be negative");
+		this.downstream = downstream;
+		this.mismatchSamples = mismatchSamples;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("scientist-aggregator-%d").setDaemon(true).build());
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, interval, interval, unit);
+	}
+
+	@Override
+	public <T, TClean> void publish(Result<T, TClean> result) {
+		ExperimentCounters counters = counters(result.getExperimentName());
+		counters.runs.increment();
+		if (result.isMismatched()) {
+			counters.mismatches.increment();
+			counters.sample(result);
+		}
+		if (!result.getIgnoredObservations().isEmpty()) {
+			counters.ignored.increment();
+		} else if (!result.isMismatched()) {
+			counters.matches.increment();
+		}
+
+		for (Observation<T, TClean> candidate : result.getCandidates()) {
+			CandidateCounters c = counters.candidate(candidate.getName());
+			c.runs.increment();
+			if (Result.containsInstance(result.getMismatchedObservations(), candidate)) {
+				c.mismatches.increment();
+			} else if (Result.containsInstance(result.getIgnoredObservations(), candidate)) {
+				c.ignored.increment();
+			} else {
+				c.matches.increment();
+			}
+			if (candidate.isTimedOut()) {
+				c.timeouts.increment();
+			} else if (candidate.isThrown()) {
+				c.exceptions.increment();
+			}
+		}
+	}
+
+	@Override
+	public void publishSkipped(String experimentName) {
+		counters(experimentName).skipped.increment();
+	}
+
+	/** Publish the summaries of the current interval now, and start a new interval. */
+	public synchronized void flush() {
+		long start = intervalStartMillis;
+		long end = System.currentTimeMillis();
+		intervalStartMillis = end;
+
+		for (Entry<String, ExperimentCounters> entry : experiments.entrySet()) {
+			ExperimentSummary summary = entry.getValue().summarize(entry.getKey(), start, end);
+			if (summary.getRuns() == 0 && summary.getSkipped() == 0) {
+				continue;
+			}
+			try {
+				downstream.publish(summary);
+			} catch (Exception e) {
+				log.warn("Failed to publish experiment summary", e);
+			}
+		}
+	}
+
+	/** Stop publishing summaries, after publishing the summaries of the current interval. */
+	public void shutdown() {
+		scheduler.shutdown();
+		flush();
+	}
+
+	private ExperimentCounters counters(String experimentName) {
+		ExperimentCounters counters = experiments.get(experimentName);
+		if (counters == null) {
+			ExperimentCounters created = new ExperimentCounters(mismatchSamples);
+			counters = experiments.putIfAbsent(experimentName, created);
+			if (counters == null) {
+				counters = created;
+			}
+		}
+		return counters;
+	}
+
+	/** The counters of one candidate. */
+	private static final class CandidateCounters {
+		private final LongAdder runs = new LongAdder();
+		private final LongAdder matches = new LongAdder();
+		private final LongAdder mismatches = new LongAdder();
+		private final LongAdder ignored = new LongAdder();
+		private final LongAdder timeouts = new LongAdder();
+		private final LongAdder exceptions = new LongAdder();
+
+		private CandidateSummary summarize(String name) {
+			return new CandidateSummary(name, runs.sumThenReset(), matches.sumThenReset(),
+					mismatches.sumThenReset(), ignored.sumThenReset(), timeouts.sumThenReset(),
+					exceptions.sumThenReset());
+		}
+	}
+
+	/** The counters of one experiment. */
+	private static final class ExperimentCounters {
+		private final LongAdder runs = new LongAdder();
+		private final LongAdder matches = new LongAdder();
+		private final LongAdder mismatches = new LongAdder();
+		private final LongAdder ignored = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+		private final ConcurrentMap<String, CandidateCounters> candidates = new ConcurrentHashMap<>();
+		private final AtomicReferenceArray<Result<?, ?>> samples;
+		private final AtomicInteger sampled = new AtomicInteger();
+
+		private ExperimentCounters(int mismatchSamples) {
+			samples = new AtomicReferenceArray<>(mismatchSamples);
+		}
+
+		private CandidateCounters candidate(String name) {
+			CandidateCounters counters = candidates.get(name);
+			if (counters == null) {
+				CandidateCounters created = new CandidateCounters();
+				counters = candidates.putIfAbsent(name, created);
+				if (counters == null) {
+					counters = created;
+				}
+			}
+			return counters;
+		}
+
+		/** Keep a mismatched result, unless enough are kept for this interval. */
+		private void sample(Result<?, ?> result) {
+			if (sampled.get() >= samples.length()) {
+				return;
+			}
+			int slot = sampled.getAndIncrement();
+			if (slot < samples.length()) {
+				samples.set(slot, result);
+			}
+		}
+
+		private ExperimentSummary summarize(String experimentName, long start, long end) {
+			ImmutableMap.Builder<String, CandidateSummary> candidateSummaries = ImmutableMap.builder();
+			for (Entry<String, CandidateCounters> entry : candidates.entrySet()) {
+				candidateSummaries.put(entry.getKey(), entry.getValue().summarize(entry.getKey()));
+			}
+
+			ImmutableList.Builder<Result<?, ?>> mismatchSamples = ImmutableList.builder();
+			for (int i = 0; i < samples.length(); i++) {
+				Result<?, ?> sample = samples.getAndSet(i, null);
+				if (sample != null) {
+					mismatchSamples.add(sample);
+				}
+			}
+			sampled.set(0);
+
+			return new ExperimentSummary(experimentName, start, end, runs.sumThenReset(), matches.sumThenReset(),
+					mismatches.sumThenReset(), ignored.sumThenReset(), skipped.sumThenReset(),
+					candidateSummaries.build(), mismatchSamples.build());
+		}
+	}
+}
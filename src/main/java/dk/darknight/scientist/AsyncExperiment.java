@@ -0,0 +1,33 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.base.Supplier;
+
+import lombok.NonNull;
+
+class AsyncExperiment<T, TClean> extends AbstractExperiment<T, TClean, Supplier<CompletableFuture<T>>>
+		implements IAsyncExperiment<T, TClean> {
+	public AsyncExperiment(@NonNull String name, @NonNull Supplier<Boolean> enabled) {
+		super(name, enabled);
+	}
+
+	@Override
+	public void attempt(@NonNull String name, @NonNull Supplier<CompletableFuture<T>> candidate) {
+		addCandidate(name, candidate);
+	}
+
+	@Override
+	public void attempt(@NonNull Supplier<CompletableFuture<T>> candidate) {
+		addCandidate(candidate);
+	}
+
+	public AsyncExperimentInstance<T, TClean> build() {
+		return new AsyncExperimentInstance<>(settings());
+	}
+
+	@Override
+	public void use(@NonNull Supplier<CompletableFuture<T>> control) {
+		setControl(control);
+	}
+}
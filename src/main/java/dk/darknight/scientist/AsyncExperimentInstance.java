@@ -0,0 +1,122 @@
+package dk.darknight.scientist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.google.common.base.Supplier;
+
+/**
+ * An instance of an asynchronous experiment. The behaviors are started on the
+ * calling thread, and the observations are compared and published when the
+ * behaviors' futures complete, so no thread waits for them.
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+final class AsyncExperimentInstance<T, TClean>
+		extends AbstractExperimentInstance<T, TClean, Supplier<CompletableFuture<T>>> {
+	public AsyncExperimentInstance(ExperimentSettings<T, TClean, Supplier<CompletableFuture<T>>> settings) {
+		super(settings);
+	}
+
+	/** Complete the future returned to the caller with the outcome of the control. */
+	private static <T, TClean> void complete(CompletableFuture<T> result, Observation<T, TClean> control) {
+		if (control.isThrown()) {
+			result.completeExceptionally(control.getException());
+		} else {
+			result.complete(control.getValue());
+		}
+	}
+
+	/**
+	 * Run the experiment.
+	 * 
+	 * @return a future that completes with the outcome of the control, as soon as
+	 *         the control completes. If the experiment throws on mismatches, the
+	 *         future completes once all candidates are compared.
+	 */
+	public CompletableFuture<T> run() {
+		final List<NamedBehavior<Supplier<CompletableFuture<T>>>> behaviors = getBehaviors();
+
+		// Determine if experiments should be run.
+		if (!shouldExperimentRun(getContexts())) {
+			return behaviors.get(0).getBehavior().get();
+		}
+
+		// Shed load by running only the control, while still timing it
+		if (!isAdmitted(null)) {
+			final long start = System.nanoTime();
+			CompletableFuture<T> control = getControl().get();
+			control.whenComplete(new BiConsumer<T, Throwable>() {
+				@Override
+				public void accept(T value, Throwable exception) {
+					recordControlLatency(System.nanoTime() - start);
+				}
+			});
+			return control;
+		}
+
+		if (getBeforeRun() != null) {
+			getBeforeRun().apply(null);
+		}
+
+		// Order the behaviors without touching the shared list
+		final int behaviorCount = behaviors.size();
+		final long order = getOrderingPolicy().seed(behaviorCount);
+
+		final List<CompletableFuture<Observation<T, TClean>>> observations = new ArrayList<>();
+		final List<String> observationNames = new ArrayList<>();
+		CompletableFuture<Observation<T, TClean>> controlFuture = null;
+
+		for (int i = 0; i < behaviorCount; i++) {
+			NamedBehavior<Supplier<CompletableFuture<T>>> b = behaviors
+					.get(getOrderingPolicy().behaviorAt(i, behaviorCount, order));
+			final boolean isControl = CONTROL_EXPERIMENT_NAME.equals(b.getName());
+			@SuppressWarnings("unchecked")
+			CompletableFuture<Observation<T, TClean>> o = (CompletableFuture<Observation<T, TClean>>) ((CompletableFuture<?>) Observation
+					.ofAsync(b.getName(), b.getBehavior(), getThrown(), getCleaner(),
+							isControl ? 0 : getTimeoutNanos(b.getName())));
+
+			if (isControl) {
+				controlFuture = o;
+			}
+			observations.add(o);
+			observationNames.add(b.getName());
+		}
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final CompletableFuture<Observation<T, TClean>> control = controlFuture;
+
+		CompletableFuture.allOf(observations.toArray(new CompletableFuture<?>[observations.size()]))
+				.thenRun(new Runnable() {
+					@Override
+					public void run() {
+						Observation<T, TClean> controlObservation = control.join();
+						recordControlLatency(controlObservation.getDurationNanos());
+						try {
+							publish(publication(observations, observationNames, controlObservation, getContexts()));
+						} catch (RuntimeException e) {
+							result.completeExceptionally(e);
+							return;
+						}
+						complete(result, controlObservation);
+					}
+				});
+
+		if (!isThrowOnMismatches()) {
+			controlFuture.thenAccept(new Consumer<Observation<T, TClean>>() {
+				@Override
+				public void accept(Observation<T, TClean> controlObservation) {
+					complete(result, controlObservation);
+				}
+			});
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,195 @@
+package dk.darknight.scientist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Function;
+
+/**
+ * Runs an experiment whose behaviors process a batch of inputs and return a
+ * list with an element per input, comparing the lists element by element.
+ * <p>
+ * The elements are compared in parallel on the common {@link ForkJoinPool},
+ * when the result is compared, and every differing index is kept, so the
+ * published {@link BatchResult} holds the indices of all the differing
+ * elements of every candidate. Elements beyond the end of the shorter list
+ * differ, and so do elements the comparator throws on. The first exception of
+ * the comparator is rethrown once the indices are recorded. A comparison is
+ * used for a single run.
+ * </p>
+ *
+ * @param <E>
+ *           The type of the elements
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+final class BatchComparison<E, TClean> implements IDiffComparator<List<E>> {
+	/** The number of elements a fork-join task compares without splitting. */
+	static final int SPLIT_THRESHOLD = 1024;
+
+	private static final int[] NONE = new int[0];
+
+	private final Comparator<? super E> comparator;
+	private final Map<List<E>, int[]> mismatches = Collections.synchronizedMap(new IdentityHashMap<List<E>, int[]>());
+	private final Instance instance;
+
+	/**
+	 * Create a comparison.
+	 *
+	 * @param settings
+	 *           the settings of the experiment
+	 * @param comparator
+	 *           compares elements. If it is an {@link IDiffComparator}, the
+	 *           path of the first difference is prefixed with the index of the
+	 *           element
+	 */
+	BatchComparison(ExperimentSettings<List<E>, TClean, Function<Object, List<E>>> settings,
+			Comparator<? super E> comparator) {
+		this.comparator = comparator;
+		settings.setComparator(this);
+		instance = new Instance(settings);
+	}
+
+	/**
+	 * Run the experiment.
+	 *
+	 * @return the value of the control
+	 */
+	List<E> run() {
+		return instance.run(null);
+	}
+
+	/**
+	 * Gets the indices of the elements of a candidate's list that differ from
+	 * the control's, in ascending order.
+	 *
+	 * @param candidate
+	 *           the list returned by the candidate
+	 * @return the indices, or <code>null</code> if the list was not compared
+	 */
+	int[] getMismatchedIndices(List<E> candidate) {
+		return mismatches.get(candidate);
+	}
+
+	@Override
+	public Difference diff(List<E> control, List<E> candidate) {
+		List<E> c = control instanceof RandomAccess ? control : new ArrayList<>(control);
+		List<E> d = candidate instanceof RandomAccess ? candidate : new ArrayList<>(candidate);
+		int common = Math.min(c.size(), d.size());
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		int[] indices = ForkJoinPool.commonPool().invoke(new CompareTask(c, d, 0, common, failure));
+
+		if (c.size() != d.size()) {
+			int size = indices.length;
+			indices = Arrays.copyOf(indices, size + Math.max(c.size(), d.size()) - common);
+			for (int i = common; size < indices.length; i++) {
+				indices[size++] = i;
+			}
+		}
+		mismatches.put(candidate, indices);
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+
+		if (indices.length == 0) {
+			return null;
+		}
+		int first = indices[0];
+		String path = "[" + first + "]";
+		String count = indices.length + " of " + Math.max(c.size(), d.size()) + " elements differ, first ";
+		if (first >= d.size()) {
+			return new Difference(path, count + "missing element", c.get(first), null);
+		}
+		if (first >= c.size()) {
+			return new Difference(path, count + "unexpected element", null, d.get(first));
+		}
+		if (comparator instanceof IDiffComparator) {
+			@SuppressWarnings("unchecked")
+			Difference e = ((IDiffComparator<E>) comparator).diff(c.get(first), d.get(first));
+			if (e != null) {
+				return new Difference(path + e.getPath(), count + e.getReason(), e.getControl(), e.getCandidate());
+			}
+		}
+		return new Difference(path, count + "values differ", c.get(first), d.get(first));
+	}
+
+	/** Compares a range of the elements, splitting it while it is large. */
+	private final class CompareTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<E> control;
+		private final List<E> candidate;
+		private final int from;
+		private final int to;
+		private final AtomicReference<RuntimeException> failure;
+
+		private CompareTask(List<E> control, List<E> candidate, int from, int to,
+				AtomicReference<RuntimeException> failure) {
+			this.control = control;
+			this.candidate = candidate;
+			this.from = from;
+			this.to = to;
+			this.failure = failure;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (to - from > SPLIT_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				CompareTask left = new CompareTask(control, candidate, from, middle, failure);
+				left.fork();
+				int[] right = new CompareTask(control, candidate, middle, to, failure).compute();
+				int[] l = left.join();
+				if (right.length == 0) {
+					return l;
+				}
+				int[] both = Arrays.copyOf(l, l.length + right.length);
+				System.arraycopy(right, 0, both, l.length, right.length);
+				return both;
+			}
+
+			int[] indices = NONE;
+			int size = 0;
+			for (int i = from; i < to; i++) {
+				if (!equivalent(i)) {
+					if (size == indices.length) {
+						indices = Arrays.copyOf(indices, Math.max(8, size * 2));
+					}
+					indices[size++] = i;
+				}
+			}
+			return size == indices.length ? indices : Arrays.copyOf(indices, size);
+		}
+
+		private boolean equivalent(int i) {
+			try {
+				return comparator.compare(control.get(i), candidate.get(i)) == 0;
+			} catch (RuntimeException e) {
+				failure.compareAndSet(null, e);
+				return false;
+			}
+		}
+	}
+
+	/** The experiment instance, which publishes {@link BatchResult}s. */
+	private final class Instance extends ExperimentInstance<Object, List<E>, TClean> {
+		private Instance(ExperimentSettings<List<E>, TClean, Function<Object, List<E>>> settings) {
+			super(settings);
+		}
+
+		@Override
+		protected Result<List<E>, TClean> newResult(List<Observation<List<E>, TClean>> observations,
+				Observation<List<E>, TClean> controlObservation, Map<String, Object> contexts) {
+			return new BatchResult<>(this, observations, controlObservation, contexts, BatchComparison.this);
+		}
+	}
+}
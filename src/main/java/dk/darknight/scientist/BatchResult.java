@@ -0,0 +1,78 @@
+package dk.darknight.scientist;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+
+/**
+ * The outcome of a batch experiment run, see
+ * {@link Scientist#scienceBatch(String, java.util.Comparator, dk.darknight.scientist.functions.ExperimentFunction)}.
+ * <p>
+ * A batch run publishes one result, whose values are the lists returned by
+ * the behaviors, and which also tells which elements differ.
+ * </p>
+ *
+ * @param <E>
+ *           The type of the elements
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+public class BatchResult<E, TClean> extends Result<List<E>, TClean> {
+	private final BatchComparison<E, TClean> comparison;
+
+	private final Supplier<ImmutableMap<String, ImmutableList<Integer>>> mismatchedIndices = Suppliers
+			.memoize(new Supplier<ImmutableMap<String, ImmutableList<Integer>>>() {
+				@Override
+				public ImmutableMap<String, ImmutableList<Integer>> get() {
+					// Compares the candidates, if no one has asked yet
+					getMismatchedObservations();
+
+					ImmutableMap.Builder<String, ImmutableList<Integer>> builder = ImmutableMap.builder();
+					for (Observation<List<E>, TClean> candidate : getCandidates()) {
+						int[] indices = candidate.isThrown() ? null
+								: comparison.getMismatchedIndices(candidate.getValue());
+						builder.put(candidate.getName(),
+								indices == null ? ImmutableList.<Integer>of() : ImmutableList.copyOf(Ints.asList(indices)));
+					}
+					return builder.build();
+				}
+			});
+
+	BatchResult(AbstractExperimentInstance<List<E>, TClean, ?> experiment, List<Observation<List<E>, TClean>> observations,
+			Observation<List<E>, TClean> control, Map<String, Object> contexts, BatchComparison<E, TClean> comparison) {
+		super(experiment, observations, control, contexts);
+		this.comparison = comparison;
+	}
+
+	/** Gets the number of elements returned by the control, or 0 if it threw. */
+	public int getSize() {
+		List<E> elements = getControl().getValue();
+		return elements == null ? 0 : elements.size();
+	}
+
+	/**
+	 * Gets the indices of the differing elements of every candidate, in
+	 * ascending order. A candidate has no indices if it matched, or if it or
+	 * the control threw.
+	 */
+	public ImmutableMap<String, ImmutableList<Integer>> getMismatchedIndices() {
+		return mismatchedIndices.get();
+	}
+
+	/**
+	 * Gets the indices of the differing elements of a candidate.
+	 * 
+	 * @param candidateName
+	 *           the name of the candidate
+	 * @return the indices in ascending order, or an empty list
+	 */
+	public ImmutableList<Integer> getMismatchedIndices(String candidateName) {
+		ImmutableList<Integer> indices = getMismatchedIndices().get(candidateName);
+		return indices == null ? ImmutableList.<Integer>of() : indices;
+	}
+}
@@ -0,0 +1,31 @@
+package dk.darknight.scientist;
+
+import lombok.Value;
+
+/** The outcome of a candidate over the flush interval of an {@link AggregatingPublisher}. */
+@Value
+public class CandidateSummary {
+	/** Gets the name of the candidate. */
+	String name;
+
+	/** Gets the number of runs of the candidate. */
+	long runs;
+
+	/** Gets the number of runs where the candidate matched the control. */
+	long matches;
+
+	/**
+	 * Gets the number of runs where the candidate did not match the control,
+	 * not counting ignored mismatches.
+	 */
+	long mismatches;
+
+	/** Gets the number of runs where a mismatch of the candidate was ignored. */
+	long ignored;
+
+	/** Gets the number of runs where the candidate timed out. */
+	long timeouts;
+
+	/** Gets the number of runs where the candidate threw an exception. */
+	long exceptions;
+}
@@ -0,0 +1,73 @@
+package dk.darknight.scientist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/** Factory for the built-in {@link ICodec}s. */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Codecs {
+	private static final byte[] NULL = new byte[0];
+
+	private static final ICodec<String> UTF8 = new ICodec<String>() {
+		@Override
+		public byte[] encode(String value) {
+			if (value == null) {
+				return NULL;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			byte[] marked = new byte[bytes.length + 1];
+			marked[0] = 1;
+			System.arraycopy(bytes, 0, marked, 1, bytes.length);
+			return marked;
+		}
+
+		@Override
+		public String decode(byte[] bytes) {
+			return bytes.length == 0 ? null : new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+		}
+	};
+
+	private static final ICodec<Serializable> SERIALIZABLE = new ICodec<Serializable>() {
+		@Override
+		public byte[] encode(Serializable value) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(value);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot serialize " + value, e);
+			}
+			return bytes.toByteArray();
+		}
+
+		@Override
+		public Serializable decode(byte[] bytes) {
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+				return (Serializable) in.readObject();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new IllegalArgumentException("Cannot deserialize value", e);
+			}
+		}
+	};
+
+	/** Gets a codec of strings, as UTF-8. */
+	public static ICodec<String> utf8() {
+		return UTF8;
+	}
+
+	/**
+	 * Gets a codec of serializable values, using Java serialization. It is
+	 * convenient, but neither fast nor compact.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V extends Serializable> ICodec<V> serializable() {
+		return (ICodec<V>) SERIALIZABLE;
+	}
+}
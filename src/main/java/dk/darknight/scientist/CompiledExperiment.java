@@ -0,0 +1,69 @@
+package dk.darknight.scientist;
+
+import java.util.Map;
+
+import lombok.NonNull;
+
+/**
+ * An experiment that is defined once and run many times, created with
+ * {@link Scientist#compile(String, dk.darknight.scientist.functions.ExperimentDefinitionFunction)}.
+ * <p>
+ * Building and validating the experiment happens when it is compiled, so a run
+ * only evaluates the behaviors with its input. A compiled experiment is thread
+ * safe, and is meant to be kept, e.g. in a static field, and shared.
+ * </p>
+ * <p>
+ * Whether Scientist is enabled, the global sampler and the result publisher
+ * are looked up on every run. The default executor, governor and timeout are
+ * those configured when the experiment is compiled.
+ * </p>
+ *
+ * @param <I>
+ *           The input type of the experiment
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+public final class CompiledExperiment<I, T, TClean> {
+	private final ExperimentInstance<I, T, TClean> instance;
+
+	CompiledExperiment(ExperimentInstance<I, T, TClean> instance) {
+		this.instance = instance;
+	}
+
+	/** Gets the instance that runs the experiment. */
+	ExperimentInstance<I, T, TClean> getInstance() {
+		return instance;
+	}
+
+	/** Gets the name of the experiment. */
+	public String getName() {
+		return instance.getName();
+	}
+
+	/**
+	 * Run the experiment.
+	 * 
+	 * @param input
+	 *           The input passed to the control and the candidates.
+	 * @return The value of the experiment's control function.
+	 */
+	public T run(I input) {
+		return instance.run(input);
+	}
+
+	/**
+	 * Run the experiment.
+	 * 
+	 * @param input
+	 *           The input passed to the control and the candidates.
+	 * @param contexts
+	 *           Context data of this run, added to the contexts of the
+	 *           experiment.
+	 * @return The value of the experiment's control function.
+	 */
+	public T run(I input, @NonNull Map<String, Object> contexts) {
+		return instance.run(input, contexts);
+	}
+}
@@ -0,0 +1,36 @@
+package dk.darknight.scientist;
+
+import lombok.Value;
+
+/**
+ * The first place where the result of a candidate differs from the result of
+ * the control, as found by an {@link IDiffComparator}.
+ */
+@Value
+public class Difference {
+	/**
+	 * Gets the path from the root of the result to the differing element, e.g.
+	 * <code>[3].lines[0]</code>. The path is empty when the results differ as a
+	 * whole.
+	 */
+	String path;
+
+	/** Gets why the elements differ, e.g. <code>size 3 != 4</code>. */
+	String reason;
+
+	/** Gets the element of the control's result at the path. */
+	Object control;
+
+	/** Gets the element of the candidate's result at the path. */
+	Object candidate;
+
+	/** Gets a one line description of the difference. */
+	public String getSummary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(path.isEmpty() ? "<root>" : path).append(": ").append(reason);
+		if (control != null || candidate != null) {
+			sb.append(" (expected '").append(control).append("' but was '").append(candidate).append("')");
+		}
+		return sb.toString();
+	}
+}
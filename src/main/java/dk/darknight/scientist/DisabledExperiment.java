@@ -0,0 +1,144 @@
+package dk.darknight.scientist;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+
+import dk.darknight.scientist.functions.Action;
+import dk.darknight.scientist.functions.DoubleAction;
+import dk.darknight.scientist.functions.DoubleFunction;
+import lombok.NonNull;
+
+/**
+ * An experiment that only keeps its control, used when Scientist is disabled.
+ * <p>
+ * One instance is reused per thread, so defining a disabled experiment
+ * allocates nothing. Everything but the control is ignored.
+ * </p>
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+final class DisabledExperiment<T, TClean> implements IExperiment<T, TClean> {
+	private static final ThreadLocal<DisabledExperiment<?, ?>> CURRENT = new ThreadLocal<DisabledExperiment<?, ?>>() {
+		@Override
+		protected DisabledExperiment<?, ?> initialValue() {
+			return new DisabledExperiment<>();
+		}
+	};
+
+	private Supplier<T> control;
+	private boolean inUse;
+
+	/**
+	 * Gets the experiment of the calling thread, or a new one if the thread's
+	 * experiment is being defined, e.g. by a nested experiment.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T, TClean> DisabledExperiment<T, TClean> acquire() {
+		DisabledExperiment<T, TClean> experiment = (DisabledExperiment<T, TClean>) CURRENT.get();
+		if (experiment.inUse) {
+			experiment = new DisabledExperiment<>();
+		}
+		experiment.inUse = true;
+		return experiment;
+	}
+
+	/**
+	 * Take the control and make the experiment available for reuse.
+	 * 
+	 * @return the control, or {@code null} if none was defined
+	 */
+	Supplier<T> release() {
+		Supplier<T> c = control;
+		control = null;
+		inUse = false;
+		return c;
+	}
+
+	@Override
+	public void addContext(String key, Object data) {
+	}
+
+	@Override
+	public void attempt(String name, Supplier<T> candidate) {
+	}
+
+	@Override
+	public void attempt(Supplier<T> candidate) {
+	}
+
+	@Override
+	public void beforeRun(Action<Void> action) {
+	}
+
+	@Override
+	public void clean(Function<T, TClean> cleaner) {
+	}
+
+	@Override
+	public void compare(Comparator<T> comparator) {
+	}
+
+	@Override
+	public void ignore(DoubleFunction<T, T, Boolean> block) {
+	}
+
+	@Override
+	public boolean isThrowOnMismatches() {
+		return false;
+	}
+
+	@Override
+	public void runIf(Supplier<Boolean> check) {
+	}
+
+	@Override
+	public void sample(ISampler sampler) {
+	}
+
+	@Override
+	public void setExecutionMode(ExecutionMode executionMode) {
+	}
+
+	@Override
+	public void setExecutor(IExperimentExecutor executor) {
+	}
+
+	@Override
+	public void setGovernor(ExperimentGovernor governor) {
+	}
+
+	@Override
+	public void setMeasureResourceUsage(boolean measureResourceUsage) {
+	}
+
+	@Override
+	public void setOrderingPolicy(OrderingPolicy orderingPolicy) {
+	}
+
+	@Override
+	public void setThrowOnMismatches(boolean throwOnMismatches) {
+	}
+
+	@Override
+	public void setTimeout(long timeout, TimeUnit unit) {
+	}
+
+	@Override
+	public void setTimeout(String candidateName, long timeout, TimeUnit unit) {
+	}
+
+	@Override
+	public void thrown(DoubleAction<Operation, Exception> block) {
+	}
+
+	@Override
+	public void use(@NonNull Supplier<T> control) {
+		this.control = control;
+	}
+}
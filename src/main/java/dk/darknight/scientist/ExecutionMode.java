@@ -0,0 +1,22 @@
+package dk.darknight.scientist;
+
+/** Decides where the control of an experiment runs, relative to its candidates. */
+public enum ExecutionMode {
+	/**
+	 * The control and the candidates are all handed to the experiment executor.
+	 * The calling thread runs the control itself unless a worker has already
+	 * started it, so it never waits for the control behind other experiments'
+	 * behaviors in the executor's queue.
+	 */
+	CONCURRENT,
+	/**
+	 * The control runs on the calling thread while the candidates run in
+	 * parallel on the experiment executor.
+	 */
+	CONTROL_INLINE,
+	/**
+	 * The control runs on the calling thread, and the candidates are handed to
+	 * the experiment executor once the control has returned.
+	 */
+	CONTROL_FIRST
+}
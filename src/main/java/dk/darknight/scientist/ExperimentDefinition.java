@@ -0,0 +1,41 @@
+package dk.darknight.scientist;
+
+import com.google.common.base.*;
+
+import lombok.NonNull;
+
+class ExperimentDefinition<I, T, TClean> extends AbstractSynchronousExperiment<I, T, TClean>
+		implements IExperimentDefinition<I, T, TClean> {
+	private ExperimentRecorder<I, T> recorder;
+
+	public ExperimentDefinition(@NonNull String name, @NonNull Supplier<Boolean> enabled, int concurrentTasks) {
+		super(name, enabled, concurrentTasks);
+	}
+
+	@Override
+	public void attempt(@NonNull String name, @NonNull Function<I, T> candidate) {
+		addCandidate(name, candidate);
+	}
+
+	@Override
+	public void attempt(@NonNull Function<I, T> candidate) {
+		addCandidate(candidate);
+	}
+
+	@Override
+	public void record(@NonNull ExperimentRecorder<I, T> recorder) {
+		this.recorder = recorder;
+	}
+
+	@Override
+	protected ExperimentSettings<T, TClean, Function<I, T>> settings() {
+		ExperimentSettings<T, TClean, Function<I, T>> settings = super.settings();
+		settings.setRecorder(recorder);
+		return settings;
+	}
+
+	@Override
+	public void use(@NonNull Function<I, T> control) {
+		setControl(control);
+	}
+}
@@ -0,0 +1,119 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * The default {@link IExperimentExecutor}, backed by a fixed size thread pool
+ * with a bounded queue.
+ * <p>
+ * Worker threads are daemon threads that are created on demand and retired
+ * after being idle for a while, so an unused executor holds no threads.
+ * </p>
+ */
+public class ExperimentExecutor implements IExperimentExecutor {
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	static final int MINIMUM_DEFAULT_CONCURRENCY = 4;
+
+	/**
+	 * The executor used by experiments unless another is configured. It runs
+	 * at least a control and a few candidates in parallel, even on machines
+	 * with few processors.
+	 */
+	public static final ExperimentExecutor DEFAULT = new ExperimentExecutor(
+			Math.max(MINIMUM_DEFAULT_CONCURRENCY, Runtime.getRuntime().availableProcessors()), DEFAULT_QUEUE_CAPACITY);
+
+	private final ThreadPoolExecutor pool;
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Create an executor.
+	 *
+	 * @param maximumConcurrency
+	 *           the number of worker threads, and thereby the maximum number of
+	 *           behaviors executing at the same time
+	 * @param queueCapacity
+	 *           the number of behaviors that may wait for a worker before new
+	 *           behaviors are rejected, or 0 to reject behaviors unless a
+	 *           worker is free
+	 */
+	public ExperimentExecutor(int maximumConcurrency, int queueCapacity) {
+		this(maximumConcurrency, queueCapacity,
+				new ThreadFactoryBuilder().setNameFormat("scientist-experiment-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * Create an executor.
+	 *
+	 * @param maximumConcurrency
+	 *           the number of worker threads, and thereby the maximum number of
+	 *           behaviors executing at the same time
+	 * @param queueCapacity
+	 *           the number of behaviors that may wait for a worker before new
+	 *           behaviors are rejected, or 0 to reject behaviors unless a
+	 *           worker is free
+	 * @param threadFactory
+	 *           the factory used to create worker threads
+	 */
+	public ExperimentExecutor(int maximumConcurrency, int queueCapacity, @NonNull ThreadFactory threadFactory) {
+		Preconditions.checkArgument(maximumConcurrency > 0, "maximumConcurrency must be greater than 0");
+		Preconditions.checkArgument(queueCapacity >= 0, "queueCapacity must not be negative");
+		BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<Runnable>()
+				: new ArrayBlockingQueue<Runnable>(queueCapacity);
+		pool = new ThreadPoolExecutor(maximumConcurrency, maximumConcurrency, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				queue, threadFactory, new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+						rejected.incrementAndGet();
+						throw new RejectedExecutionException("Experiment executor is saturated");
+					}
+				});
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public void execute(@NonNull Runnable command) {
+		pool.execute(command);
+	}
+
+	@Override
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	@Override
+	public int getMaximumConcurrency() {
+		return pool.getMaximumPoolSize();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return pool.getQueue().size();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Stop accepting new behaviors. Behaviors that are already submitted are
+	 * still executed.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
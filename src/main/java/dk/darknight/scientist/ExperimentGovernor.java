@@ -0,0 +1,173 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Sheds experiment load when experiments hurt production.
+ * <p>
+ * The governor watches the latency of the control and the saturation of the
+ * experiment executor. While any configured threshold is crossed, the share of
+ * runs whose candidates are executed is cut by {@link #backoffFactor} per
+ * adjustment interval, down to zero once it falls below
+ * {@link #minimumRate}. When the signals are back under their thresholds, the
+ * rate recovers by {@link #recoveryStep} per interval.
+ * </p>
+ * <p>
+ * Runs skipped by the governor are reported with
+ * {@link IResultPublisher#publishSkipped(String)}. A governor is configured
+ * with {@link Scientist#setGovernor(ExperimentGovernor)} or per experiment
+ * with {@link IExperimentBase#setGovernor(ExperimentGovernor)}.
+ * </p>
+ */
+@Getter
+public class ExperimentGovernor {
+	/** The weight of a new control latency in the moving average. */
+	private static final double LATENCY_WEIGHT = 0.1;
+
+	/** Shed load when the average control latency exceeds this many milliseconds. */
+	private final long controlLatencyThresholdMillis;
+
+	/** Shed load when more behaviors than this are waiting for the executor. */
+	private final int queueDepthThreshold;
+
+	/**
+	 * Shed load when this share of the executor's maximum concurrency is in use,
+	 * between 0 and 1.
+	 */
+	private final double saturationThreshold;
+
+	/** The factor the sampling rate is multiplied by while overloaded. */
+	private final double backoffFactor;
+
+	/** The sampling rate below which all candidates are skipped. */
+	private final double minimumRate;
+
+	/** The amount the sampling rate recovers by per interval when not overloaded. */
+	private final double recoveryStep;
+
+	/** The number of milliseconds between adjustments of the sampling rate. */
+	private final long adjustmentIntervalMillis;
+
+	@Getter(AccessLevel.NONE)
+	private final AtomicLong averageControlLatencyBits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+	@Getter(AccessLevel.NONE)
+	private final AtomicLong lastAdjustment = new AtomicLong(System.nanoTime());
+
+	@Getter(AccessLevel.NONE)
+	private final AtomicLong skipped = new AtomicLong();
+
+	/** The share of runs currently admitted, between 0 and 1. */
+	private volatile double samplingRate = 1;
+
+	/** Builds governors. Thresholds that are not set are never crossed. */
+	public static class ExperimentGovernorBuilder {
+		private long controlLatencyThresholdMillis = Long.MAX_VALUE;
+		private int queueDepthThreshold = Integer.MAX_VALUE;
+		private double saturationThreshold = Double.MAX_VALUE;
+		private double backoffFactor = 0.5;
+		private double minimumRate = 0.01;
+		private double recoveryStep = 0.1;
+		private long adjustmentIntervalMillis = 100;
+	}
+
+	@Builder
+	private ExperimentGovernor(long controlLatencyThresholdMillis, int queueDepthThreshold,
+			double saturationThreshold, double backoffFactor, double minimumRate, double recoveryStep,
+			long adjustmentIntervalMillis) {
+		Preconditions.checkArgument(backoffFactor >= 0 && backoffFactor < 1, "backoffFactor must be between 0 and 1");
+		Preconditions.checkArgument(recoveryStep > 0, "recoveryStep must be greater than 0");
+		Preconditions.checkArgument(adjustmentIntervalMillis > 0, "adjustmentIntervalMillis must be greater than 0");
+		this.controlLatencyThresholdMillis = controlLatencyThresholdMillis;
+		this.queueDepthThreshold = queueDepthThreshold;
+		this.saturationThreshold = saturationThreshold;
+		this.backoffFactor = backoffFactor;
+		this.minimumRate = minimumRate;
+		this.recoveryStep = recoveryStep;
+		this.adjustmentIntervalMillis = adjustmentIntervalMillis;
+	}
+
+	/**
+	 * Decide whether to execute the candidates of a run.
+	 * 
+	 * @param executor
+	 *           the executor the candidates would run on, or <code>null</code>
+	 *           if the experiment does not use one
+	 * @return <code>true</code>, if the candidates should run
+	 */
+	public boolean admit(IExperimentExecutor executor) {
+		adjust(executor);
+
+		double rate = samplingRate;
+		if (rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate)) {
+			return true;
+		}
+		skipped.incrementAndGet();
+		return false;
+	}
+
+	/** Gets the moving average of the control latency, in nanoseconds. */
+	public double getAverageControlLatencyNanos() {
+		return Double.longBitsToDouble(averageControlLatencyBits.get());
+	}
+
+	/** Gets the number of runs whose candidates were skipped. */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/** Is any of the thresholds crossed? */
+	public boolean isOverloaded(IExperimentExecutor executor) {
+		if (getAverageControlLatencyNanos() > TimeUnit.MILLISECONDS.toNanos(controlLatencyThresholdMillis)) {
+			return true;
+		}
+		if (executor == null) {
+			return false;
+		}
+		return executor.getQueueDepth() > queueDepthThreshold
+				|| executor.getActiveCount() >= saturationThreshold * executor.getMaximumConcurrency();
+	}
+
+	/**
+	 * Record the latency of a control.
+	 * 
+	 * @param nanos
+	 *           the duration of the control in nanoseconds
+	 */
+	public void recordControlLatency(long nanos) {
+		while (true) {
+			long bits = averageControlLatencyBits.get();
+			double average = Double.longBitsToDouble(bits);
+			double updated = average == 0 ? nanos : average + LATENCY_WEIGHT * (nanos - average);
+			if (averageControlLatencyBits.compareAndSet(bits, Double.doubleToRawLongBits(updated))) {
+				return;
+			}
+		}
+	}
+
+	/** Adjust the sampling rate, at most once per interval. */
+	private void adjust(IExperimentExecutor executor) {
+		long now = System.nanoTime();
+		long last = lastAdjustment.get();
+		if (now - last < TimeUnit.MILLISECONDS.toNanos(adjustmentIntervalMillis)
+				|| !lastAdjustment.compareAndSet(last, now)) {
+			return;
+		}
+
+		double rate = samplingRate;
+		if (isOverloaded(executor)) {
+			rate *= backoffFactor;
+			samplingRate = rate < minimumRate ? 0 : rate;
+		} else if (rate < 1) {
+			samplingRate = Math.min(1, rate + recoveryStep);
+		}
+	}
+}
@@ -1,171 +1,158 @@
 package dk.darknight.scientist;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.google.common.base.Function;
-import com.google.common.base.Supplier;
+import com.google.common.base.MoreObjects;
 
-import dk.darknight.scientist.functions.Action;
-import dk.darknight.scientist.functions.DoubleAction;
-import dk.darknight.scientist.functions.DoubleFunction;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.ToString;
-import lombok.Value;
 
 /**
  * An instance of an experiment. This actually runs the control and the
  * candidate and measures the result.
+ * <p>
+ * The behaviors take an input, so an instance can be built once and run many
+ * times, see {@link CompiledExperiment}. An instance holds no state of its
+ * runs and may run on several threads at once.
+ * </p>
  *
+ * @param <I>
+ *           The input type of the experiment
  * @param <T>
  *           The return type of the experiment
  * @param <TClean>
  *           The cleaned type of the experiment
  */
 @Getter
-@ToString
-@EqualsAndHashCode
-final class ExperimentInstance<T, TClean> {
-	@Value
-	private static class NamedBehavior<T> {
-		/** Gets the behavior to execute during an experiment. */
-		String name;
-		
-		/** Gets the name of the behavior. */
-		Supplier<T> behavior;
-	}
-
-	private final static String CONTROL_EXPERIMENT_NAME = "control";
-
-	private static final long CANDIDATE_TIMEOUT_MS = 5000;
-
-	private final Action<Void> beforeRun;
-	private final Map<String, Supplier<T>> candidates;
-	private final Function<T, ?> cleaner;
-	private final Comparator<T> comparator;
+class ExperimentInstance<I, T, TClean> extends AbstractExperimentInstance<T, TClean, Function<I, T>> {
 	private final int concurrentTasks;
-	private final Map<String, Object> contexts = new HashMap<>();
-	private final Supplier<T> control;
-	private final Supplier<Boolean> enabled;
-	private final List<DoubleFunction<T, T, Boolean>> ignores = new ArrayList<>();
-	private final String name;
-	private final Supplier<Boolean> runIf;
-	private final DoubleAction<Operation, Exception> thrown;
-	private final boolean throwOnMismatches;
-	private final List<NamedBehavior<T>> behaviors = new ArrayList<>();
-
-	public ExperimentInstance(ExperimentSettings<T, TClean> settings) {
-		name = settings.getName();
-		candidates = settings.getCandidates();
-		beforeRun = settings.getBeforeRun();
-		cleaner = settings.getCleaner();
-		comparator = settings.getComparator();
+	private final ExecutionMode executionMode;
+	private final IExperimentExecutor executor;
+	private final boolean measureResourceUsage;
+	private final ExperimentRecorder<I, T> recorder;
+
+	@SuppressWarnings("unchecked")
+	public ExperimentInstance(ExperimentSettings<T, TClean, Function<I, T>> settings) {
+		super(settings);
 		concurrentTasks = settings.getConcurrentTasks();
-		control = settings.getControl();
-		enabled = settings.getEnabled();
-		runIf = settings.getRunIf();
-		thrown = settings.getThrown();
-		throwOnMismatches = settings.isThrowOnMismatches();
-
-		behaviors.add(new NamedBehavior<>(CONTROL_EXPERIMENT_NAME, settings.getControl()));
-
-		Set<Entry<String, Supplier<T>>> entrySet = candidates.entrySet();
-		for (Entry<String, Supplier<T>> entry : entrySet) {
-			behaviors.add(new NamedBehavior<>(entry.getKey(), entry.getValue()));
-		}
+		executionMode = settings.getExecutionMode();
+		executor = MoreObjects.firstNonNull(settings.getExecutor(), Scientist.getExperimentExecutor());
+		measureResourceUsage = settings.isMeasureResourceUsage();
+		recorder = (ExperimentRecorder<I, T>) settings.getRecorder();
 	}
 
-	/** Determine whether or not the experiment should run. */
-	private boolean shouldExperimentRun() {
-		try {
-			// Only let the experiment run if at least one candidate (> 1
-			// behaviors) is included. The control is always included behaviors
-			// count.
-			return behaviors.size() > 1 && enabled.get() && runIfAllows();
-		} catch (Exception e) {
-			thrown.apply(Operation.ENABLED, e);
-			return false;
-		}
+	/**
+	 * Run the experiment.
+	 * 
+	 * @param input
+	 *           the input passed to the behaviors
+	 * @return the value of the control
+	 */
+	public T run(I input) {
+		return run(input, getContexts());
 	}
 
-	
-	/** Does {@link #runIf} allow the experiment to run? */
-	private boolean runIfAllows() {
-		try {
-			return runIf.get();
-		} catch (Exception e) {
-			thrown.apply(Operation.RUN_IF, e);
-			return false;
-		}
-	}
+	/**
+	 * Run the experiment.
+	 * 
+	 * @param input
+	 *           the input passed to the behaviors
+	 * @param runContexts
+	 *           context data of this run, added to the contexts of the
+	 *           experiment
+	 * @return the value of the control
+	 */
+	public T run(I input, Map<String, Object> runContexts) {
+		final Map<String, Object> contexts = mergeContexts(runContexts);
 
-	public T run() {
 		// Determine if experiments should be run.
-		if (!shouldExperimentRun()) {
-			return behaviors.get(0).getBehavior().get();
+		if (!shouldExperimentRun(contexts)) {
+			return getControl().apply(input);
 		}
 
-		if (beforeRun != null) {
-			beforeRun.apply(null);
+		if (recorder != null) {
+			return record(input, contexts);
 		}
 
-		// Randomize ordering...
-		Collections.shuffle(behaviors);
+		// Shed load by running only the control, while still timing it
+		if (!isAdmitted(executor)) {
+			final long start = System.nanoTime();
+			try {
+				return getControl().apply(input);
+			} finally {
+				recordControlLatency(System.nanoTime() - start);
+			}
+		}
 
-		// Break tasks into batches of "ConcurrentTasks" size
-		final List<Future<Observation<T, TClean>>> observations = new ArrayList<>();
-		final List<String> observationNames = new ArrayList<>();
-		Future<Observation<T, TClean>> controlFuture = null;
-		final ExecutorService xs = new ForkJoinPool(concurrentTasks, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		if (getBeforeRun() != null) {
+			getBeforeRun().apply(null);
+		}
 
-		for (NamedBehavior<T> b : behaviors) {
+		// Order the behaviors without touching the shared list
+		final List<NamedBehavior<Function<I, T>>> behaviors = getBehaviors();
+		final int behaviorCount = behaviors.size();
+		final long order = getOrderingPolicy().seed(behaviorCount);
+
+		// Limit the number of behaviors this run has in flight on the shared executor
+		final boolean controlInline = executionMode != ExecutionMode.CONCURRENT;
+		final int pooledBehaviors = controlInline ? behaviorCount - 1 : behaviorCount;
+		final Executor xs = concurrentTasks < pooledBehaviors ? new ThrottledExecutor(executor, concurrentTasks)
+				: executor;
+		final List<ObservationTask<T, TClean>> observations = new ArrayList<>(behaviorCount);
+		final List<String> observationNames = new ArrayList<>(behaviorCount);
+		ObservationTask<T, TClean> controlFuture = null;
+
+		for (int i = 0; i < behaviorCount; i++) {
+			NamedBehavior<Function<I, T>> b = behaviors.get(getOrderingPolicy().behaviorAt(i, behaviorCount, order));
 			@SuppressWarnings("unchecked")
-			Future<Observation<T, TClean>> o2 = (Future<Observation<T, TClean>>) ((Future<?>) Observation.of(xs,
-					b.getName(), b.getBehavior(), thrown, cleaner));
+			ObservationTask<T, TClean> o2 = (ObservationTask<T, TClean>) ((ObservationTask<?, ?>) Observation
+					.task(b.getName(), b.getBehavior(), input, getThrown(), getCleaner(), measureResourceUsage));
 			observations.add(o2);
 			observationNames.add(b.getName());
 
 			if (CONTROL_EXPERIMENT_NAME.equals(b.getName())) {
 				controlFuture = o2;
+				if (!controlInline) {
+					submit(xs, o2);
+				}
+			} else if (executionMode != ExecutionMode.CONTROL_FIRST) {
+				submit(xs, o2);
 			}
 		}
 
-		xs.shutdown();
+		// A control still waiting for a worker runs on the calling thread instead
+		controlFuture.run();
+
+		if (executionMode == ExecutionMode.CONTROL_FIRST) {
+			for (ObservationTask<T, TClean> o : observations) {
+				if (o != controlFuture) {
+					submit(xs, o);
+				}
+			}
+		}
 
-		final Observation<T, TClean> controlObservation;
+		Observation<T, TClean> controlObservation;
 		try {
 			controlObservation = controlFuture.get();
+		} catch (CancellationException e) {
+			// The executor was saturated, so the control runs on the calling thread
+			@SuppressWarnings("unchecked")
+			Observation<T, TClean> o = (Observation<T, TClean>) Observation.of(CONTROL_EXPERIMENT_NAME, getControl(),
+					input, getThrown(), getCleaner(), measureResourceUsage, 0);
+			controlObservation = o;
 		} catch (InterruptedException | ExecutionException e) {
 			throw new RuntimeException(e);
 		}
 
-		Future<Result<T, TClean>> result = publishAsynchronously(observations, observationNames, xs, controlObservation, this);
-
-		if (throwOnMismatches) {
-			Result<T, TClean> r;
-			try {
-				r = result.get();
-			} catch (InterruptedException | ExecutionException e) {
-				throw new RuntimeException(e);
-			}
-			if (r.isMismatched()) {
-				throw new MismatchException(name, r);
-			}
-		}
+		recordControlLatency(controlObservation.getDurationNanos());
+		publish(publication(observations, observationNames, controlObservation, contexts));
 
 		if (controlObservation.isThrown()) {
 			throw new RuntimeException(controlObservation.getException());
@@ -174,74 +161,50 @@ final class ExperimentInstance<T, TClean> {
 		return controlObservation.getValue();
 	}
 
-	/**
-	 * Publish the results asynchronously.
-	 * 
-	 * @param observations
-	 * @param observationNames
-	 * @param xs
-	 * @param controlObservation
-	 * @param instance
-	 * @return
-	 */
-	private Future<Result<T, TClean>> publishAsynchronously(final List<Future<Observation<T, TClean>>> observations,
-			final List<String> observationNames, final ExecutorService xs, final Observation<T, TClean> controlObservation,
-			final ExperimentInstance<T, TClean> instance) {
-		Future<Result<T, TClean>> result = Executors.newSingleThreadScheduledExecutor()
-				.submit(new Callable<Result<T, TClean>>() {
-					@Override
-					public Result<T, TClean> call() throws Exception {
-						Result<T, TClean> result = null;
-						try {
-							List<Observation<T, TClean>> os = resolveObservationFutures(observations, observationNames, xs);
-							result = new Result<T, TClean>(instance, os, controlObservation, contexts);
-							Scientist.getResultPublisher().publish(result);
-						} catch (Exception e) {
-							thrown.apply(Operation.PUBLISH, e);
-						}
-						return result;
-					}
-				});
-		return result;
-	}
+	/** Run only the control, and hand the run to the recorder. */
+	private T record(I input, Map<String, Object> contexts) {
+		Observation<T, ?> controlObservation = Observation.of(CONTROL_EXPERIMENT_NAME, getControl(), input,
+				getThrown(), getCleaner(), measureResourceUsage, 0);
+		recordControlLatency(controlObservation.getDurationNanos());
+		recorder.record(getName(), contexts, input, controlObservation);
 
-	private List<Observation<T, TClean>> resolveObservationFutures(
-			final List<Future<Observation<T, TClean>>> observations, final List<String> observationNames,
-			final ExecutorService xs) throws InterruptedException, ExecutionException {
-		if (xs.awaitTermination(CANDIDATE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
-			xs.shutdownNow();
-		}
-		List<Observation<T, TClean>> os = new ArrayList<>();
-		for (int i = 0; i < observations.size(); i++) {
-			Future<Observation<T, TClean>> f = observations.get(i);
-			Observation<T, TClean> o;
-			if (f.isDone()) {
-				o = f.get();
-			} else {
-				o = Observation.timedOut(observationNames.get(i));
-			}
-			os.add(o);
+		if (controlObservation.isThrown()) {
+			throw new RuntimeException(controlObservation.getException());
 		}
-		return os;
+
+		return controlObservation.getValue();
 	}
 
-	public boolean ignoreMismatchedObservation(Observation<T, TClean> control, Observation<T, TClean> candidate) {
-		if (ignores.isEmpty()) {
-			return false;
+	/** Add the context data of a run to the contexts of the experiment. */
+	private Map<String, Object> mergeContexts(Map<String, Object> runContexts) {
+		if (runContexts == getContexts() || runContexts.isEmpty()) {
+			return getContexts();
 		}
+		if (getContexts().isEmpty()) {
+			return runContexts;
+		}
+
+		Map<String, Object> contexts = new HashMap<>(getContexts());
+		contexts.putAll(runContexts);
+		return contexts;
+	}
 
+	/**
+	 * Submit a behavior to the executor. Behaviors rejected by a saturated
+	 * executor are cancelled and left out of the published result, and
+	 * candidates that do not complete within their timeout are cancelled. The
+	 * control is always allowed to complete.
+	 */
+	private void submit(Executor xs, ObservationTask<?, ?> task) {
+		task.submitted();
 		try {
-			List<DoubleFunction<?, ?, ?>> results = new ArrayList<>();
-			for (DoubleFunction<T, T, Boolean> i : ignores) {
-				if (i.apply(control.getValue(), candidate.getValue())) {
-					results.add(i);
-				}
-			}
-			return !results.isEmpty();
-		} catch (Exception e) {
-			thrown.apply(Operation.IGNORE, e);
-			return false;
+			xs.execute(task);
+		} catch (RejectedExecutionException e) {
+			task.cancel(false);
+			return;
+		}
+		if (!CONTROL_EXPERIMENT_NAME.equals(task.getName())) {
+			task.cancelAfter(getTimeoutNanos(task.getName()));
 		}
 	}
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,293 @@
+package dk.darknight.scientist;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Records the runs of compiled experiments to a local file, so their
+ * candidates can be replayed later, off the hot path, with an
+ * {@link ExperimentReplayer}.
+ * <p>
+ * An experiment that records, see
+ * {@link IExperimentDefinition#record(ExperimentRecorder)}, runs only its
+ * control. Every run that would have run the candidates hands the input, the
+ * contexts and the control's value or exception to the recorder, which queues
+ * them. A daemon thread named {@code scientist-recorder-N} encodes and appends
+ * them to the recording, so the calling thread never waits for the codecs or
+ * the disk. Runs that do not fit in the queue are dropped. Inputs and values
+ * are encoded after the run returns, so they must not be modified afterwards.
+ * </p>
+ * <p>
+ * Records are appended to an existing recording, and reach the disk when the
+ * queue is empty and on {@link #close()}. A record cut short when the process
+ * died while writing it is truncated away before appending.
+ * </p>
+ *
+ * @param <I>
+ *           The input type of the experiments
+ * @param <T>
+ *           The return type of the experiments
+ */
+public class ExperimentRecorder<I, T> {
+	private static final Logger log = LoggerFactory.getLogger(ExperimentRecorder.class);
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private final Path file;
+	private final ICodec<I> inputCodec;
+	private final ICodec<T> valueCodec;
+	private final BlockingQueue<Run<I, T>> queue;
+	private final Thread writer;
+	private volatile boolean closed;
+
+	private final AtomicLong recorded = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	// Only touched by the writer
+	private final DataOutputStream out;
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+	private final DataOutputStream bodyOut = new DataOutputStream(body);
+
+	/**
+	 * Create a recorder.
+	 * 
+	 * @param file
+	 *           the recording, which is created if missing
+	 * @param inputCodec
+	 *           encodes the inputs of the experiments
+	 * @param valueCodec
+	 *           encodes the values of the controls
+	 * @throws IOException
+	 *            if the recording cannot be opened, or is not a recording or
+	 *            is corrupt
+	 */
+	public ExperimentRecorder(@NonNull Path file, @NonNull ICodec<I> inputCodec, @NonNull ICodec<T> valueCodec)
+			throws IOException {
+		this(file, inputCodec, valueCodec, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a recorder.
+	 * 
+	 * @param file
+	 *           the recording, which is created if missing
+	 * @param inputCodec
+	 *           encodes the inputs of the experiments
+	 * @param valueCodec
+	 *           encodes the values of the controls
+	 * @param capacity
+	 *           the number of runs that may wait to be written
+	 * @throws IOException
+	 *            if the recording cannot be opened, or is not a recording or
+	 *            is corrupt
+	 */
+	public ExperimentRecorder(@NonNull Path file, @NonNull ICodec<I> inputCodec, @NonNull ICodec<T> valueCodec,
+			int capacity) throws IOException {
+		Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+		this.file = file;
+		this.inputCodec = inputCodec;
+		this.valueCodec = valueCodec;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		boolean empty = !Files.exists(file) || Files.size(file) == 0;
+		if (!empty) {
+			truncateTornRecord(file);
+		}
+		out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+		if (empty) {
+			out.writeInt(RecordingFormat.MAGIC);
+			out.writeInt(RecordingFormat.VERSION);
+			out.flush();
+		}
+
+		writer = new ThreadFactoryBuilder().setNameFormat("scientist-recorder-%d").setDaemon(true).build()
+				.newThread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				});
+		writer.start();
+	}
+
+	/** Check that a recording starts with the header of this version. */
+	static void checkHeader(DataInputStream in, Path file) throws IOException {
+		if (in.readInt() != RecordingFormat.MAGIC || in.readInt() != RecordingFormat.VERSION) {
+			throw new IOException(file + " is not a recording of this version");
+		}
+	}
+
+	/**
+	 * Find the end of the last whole record of a recording by following the
+	 * record lengths, and truncate a record cut short after it.
+	 */
+	static void truncateTornRecord(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			checkHeader(new DataInputStream(Channels.newInputStream(channel)), file);
+
+			long size = channel.size();
+			long end = RecordingFormat.HEADER_BYTES;
+			ByteBuffer length = ByteBuffer.allocate(4);
+			while (end + length.capacity() <= size) {
+				length.clear();
+				while (length.hasRemaining()) {
+					channel.read(length, end + length.position());
+				}
+				long next = end + length.capacity() + RecordingFormat.checkLength(length.getInt(0));
+				if (next > size) {
+					break;
+				}
+				end = next;
+			}
+
+			if (end < size) {
+				log.warn("Truncating a record cut short at {} of the recording {}", end, file);
+				channel.truncate(end);
+			}
+		}
+	}
+
+	/**
+	 * Queue a run of an experiment.
+	 * 
+	 * @param experimentName
+	 *           the name of the experiment
+	 * @param contexts
+	 *           the context data of the run
+	 * @param input
+	 *           the input of the run
+	 * @param control
+	 *           the control's observation
+	 */
+	void record(String experimentName, Map<String, Object> contexts, I input, Observation<T, ?> control) {
+		Run<I, T> run = new Run<>(System.currentTimeMillis(), experimentName, contexts, input, control.getValue(),
+				control.getException(), control.getDurationNanos());
+		if (closed || !queue.offer(run)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	/** Gets the number of runs written to the recording. */
+	public long getRecordedCount() {
+		return recorded.get();
+	}
+
+	/** Gets the number of runs dropped because the queue was full or the recorder was closed. */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/** Gets the number of runs that could not be encoded or written. */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Write the runs already queued, close the recording and stop the writer.
+	 * Runs recorded afterwards are dropped.
+	 * 
+	 * @throws InterruptedException
+	 *            if interrupted while waiting for the writer
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		writer.join();
+	}
+
+	private void work() {
+		while (!closed || !queue.isEmpty()) {
+			Run<I, T> run;
+			try {
+				run = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (run == null) {
+					out.flush();
+					continue;
+				}
+			} catch (InterruptedException e) {
+				break;
+			} catch (IOException e) {
+				log.warn("Failed to flush the recording {}", file, e);
+				continue;
+			}
+
+			try {
+				write(run);
+				recorded.incrementAndGet();
+			} catch (Exception e) {
+				failed.incrementAndGet();
+				log.warn("Failed to write an experiment run to the recording {}", file, e);
+			}
+		}
+
+		try {
+			out.close();
+		} catch (IOException e) {
+			log.warn("Failed to close the recording {}", file, e);
+		}
+	}
+
+	/** Encode a run into the body, then append it, so a run that fails to encode leaves nothing behind. */
+	private void write(Run<I, T> run) throws IOException {
+		body.reset();
+		bodyOut.writeLong(run.timestampMillis);
+		RecordingFormat.writeString(bodyOut, run.experimentName);
+		bodyOut.writeInt(run.contexts.size());
+		for (Map.Entry<String, Object> context : run.contexts.entrySet()) {
+			RecordingFormat.writeString(bodyOut, context.getKey());
+			RecordingFormat.writeString(bodyOut, context.getValue() == null ? null : context.getValue().toString());
+		}
+		RecordingFormat.writeBytes(bodyOut, inputCodec.encode(run.input));
+		bodyOut.writeBoolean(run.exception != null);
+		if (run.exception != null) {
+			RecordingFormat.writeString(bodyOut, Observation.exceptionClassName(run.exception));
+			RecordingFormat.writeString(bodyOut, run.exception.getMessage());
+		} else {
+			RecordingFormat.writeBytes(bodyOut, valueCodec.encode(run.value));
+		}
+		bodyOut.writeLong(run.durationNanos);
+		bodyOut.flush();
+		if (body.size() > RecordingFormat.MAXIMUM_RECORD_BYTES) {
+			throw new IOException("The run is larger than " + RecordingFormat.MAXIMUM_RECORD_BYTES + " bytes");
+		}
+
+		out.writeInt(body.size());
+		body.writeTo(out);
+	}
+
+	/** A run waiting to be written. */
+	@RequiredArgsConstructor
+	private static final class Run<I, T> {
+		private final long timestampMillis;
+		private final String experimentName;
+		private final Map<String, Object> contexts;
+		private final I input;
+		private final T value;
+		private final Exception exception;
+		private final long durationNanos;
+	}
+}
@@ -0,0 +1,226 @@
+package dk.darknight.scientist;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+
+import lombok.NonNull;
+
+/**
+ * Replays the runs of an experiment recorded by an {@link ExperimentRecorder}
+ * against its candidates, and publishes the same {@link Result}s a live run
+ * would have.
+ * <p>
+ * The recording is read in batches, and the runs of a batch are decoded and
+ * their candidates run in parallel on a {@link ForkJoinPool}, so replaying
+ * goes as fast as the machine allows. The control's observation is the
+ * recorded one: its value, or a {@link RecordedException} standing in for the
+ * exception it threw, and its duration. The contexts are the recorded ones,
+ * as strings. Candidates run without timeouts, and their results are compared
+ * and published on the pool's threads.
+ * </p>
+ * <p>
+ * The experiment must be compiled without a recorder, with the same name as
+ * the recorded one. Runs of other experiments in the recording are skipped.
+ * </p>
+ *
+ * @param <I>
+ *           The input type of the experiment
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+public class ExperimentReplayer<I, T, TClean> {
+	/** The number of runs read from the recording at a time. */
+	static final int BATCH_SIZE = 1024;
+
+	/** The number of runs a fork-join task replays without splitting. */
+	static final int SPLIT_THRESHOLD = 8;
+
+	private final ExperimentInstance<I, T, TClean> instance;
+	private final ICodec<I> inputCodec;
+	private final ICodec<T> valueCodec;
+
+	/**
+	 * Create a replayer.
+	 * 
+	 * @param experiment
+	 *           the experiment whose candidates are replayed
+	 * @param inputCodec
+	 *           decodes the recorded inputs
+	 * @param valueCodec
+	 *           decodes the recorded values of the control
+	 */
+	public ExperimentReplayer(@NonNull CompiledExperiment<I, T, TClean> experiment, @NonNull ICodec<I> inputCodec,
+			@NonNull ICodec<T> valueCodec) {
+		this.instance = experiment.getInstance();
+		this.inputCodec = inputCodec;
+		this.valueCodec = valueCodec;
+	}
+
+	/**
+	 * Replay a recording on the common fork-join pool, publishing to the global
+	 * result publisher.
+	 * 
+	 * @param recording
+	 *           the recording
+	 * @return the number of runs replayed
+	 * @throws IOException
+	 *            if the recording cannot be read
+	 */
+	public long replay(@NonNull Path recording) throws IOException {
+		return replay(recording, ForkJoinPool.commonPool(), Scientist.getResultPublisher());
+	}
+
+	/**
+	 * Replay a recording.
+	 * 
+	 * @param recording
+	 *           the recording
+	 * @param pool
+	 *           the pool the candidates run on
+	 * @param publisher
+	 *           the publisher of the results
+	 * @return the number of runs replayed
+	 * @throws IOException
+	 *            if the recording cannot be read, or is corrupt
+	 */
+	public long replay(@NonNull Path recording, @NonNull ForkJoinPool pool, @NonNull IResultPublisher publisher)
+			throws IOException {
+		AtomicLong replayed = new AtomicLong();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(recording)))) {
+			ExperimentRecorder.checkHeader(in, recording);
+
+			List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+			boolean ended = false;
+			while (!ended) {
+				batch.clear();
+				while (batch.size() < BATCH_SIZE) {
+					byte[] record = read(in);
+					if (record == null) {
+						ended = true;
+						break;
+					}
+					batch.add(record);
+				}
+				if (!batch.isEmpty()) {
+					pool.invoke(new ReplayTask(batch, 0, batch.size(), publisher, replayed));
+				}
+			}
+		}
+		return replayed.get();
+	}
+
+	/**
+	 * Read the next record, or <code>null</code> at the end of the recording or
+	 * of its last whole record.
+	 * 
+	 * @throws IOException
+	 *            if the length of the record is invalid
+	 */
+	private static byte[] read(DataInputStream in) throws IOException {
+		try {
+			int length = RecordingFormat.checkLength(in.readInt());
+			byte[] record = new byte[length];
+			in.readFully(record);
+			return record;
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	/** Replay a recorded run, if it is a run of the experiment. */
+	private boolean replay(byte[] record, IResultPublisher publisher) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		in.readLong();
+		if (!instance.getName().equals(RecordingFormat.readString(in))) {
+			return false;
+		}
+
+		int contextCount = in.readInt();
+		Map<String, Object> contexts = new HashMap<>();
+		for (int i = 0; i < contextCount; i++) {
+			contexts.put(RecordingFormat.readString(in), RecordingFormat.readString(in));
+		}
+		I input = inputCodec.decode(RecordingFormat.readBytes(in));
+		T value = null;
+		Exception exception = null;
+		if (in.readBoolean()) {
+			exception = new RecordedException(RecordingFormat.readString(in), RecordingFormat.readString(in));
+		} else {
+			value = valueCodec.decode(RecordingFormat.readBytes(in));
+		}
+		long durationNanos = in.readLong();
+
+		@SuppressWarnings("unchecked")
+		Function<T, TClean> cleaner = (Function<T, TClean>) instance.getCleaner();
+		Observation<T, TClean> control = Observation.recorded(AbstractExperimentInstance.CONTROL_EXPERIMENT_NAME,
+				value, exception, durationNanos, instance.getThrown(), cleaner);
+		List<Observation<T, TClean>> observations = new ArrayList<>();
+		observations.add(control);
+		for (Map.Entry<String, Function<I, T>> candidate : instance.getCandidates().entrySet()) {
+			observations.add(Observation.of(candidate.getKey(), candidate.getValue(), input, instance.getThrown(),
+					cleaner, instance.isMeasureResourceUsage(), 0));
+		}
+
+		try {
+			publisher.publish(new Result<>(instance, observations, control, contexts));
+		} catch (Exception e) {
+			instance.getThrown().apply(Operation.PUBLISH, e);
+		}
+		return true;
+	}
+
+	/** Replays a range of a batch, splitting it while it is large. */
+	private final class ReplayTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<byte[]> batch;
+		private final int from;
+		private final int to;
+		private final IResultPublisher publisher;
+		private final AtomicLong replayed;
+
+		private ReplayTask(List<byte[]> batch, int from, int to, IResultPublisher publisher, AtomicLong replayed) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+			this.publisher = publisher;
+			this.replayed = replayed;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > SPLIT_THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ReplayTask(batch, from, middle, publisher, replayed),
+						new ReplayTask(batch, middle, to, publisher, replayed));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				try {
+					if (replay(batch.get(i), publisher)) {
+						replayed.incrementAndGet();
+					}
+				} catch (Exception e) {
+					instance.getThrown().apply(Operation.REPLAY, e);
+				}
+			}
+		}
+	}
+}
@@ -20,22 +20,33 @@ import lombok.NoArgsConstructor;
  *           The result type for the experiment.
  * @param <TClean>
  *           The cleaned type of the experiment.
+ * @param <B>
+ *           The type of the experiment's behaviors.
  */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-class ExperimentSettings<T, TClean> {
+class ExperimentSettings<T, TClean, B> {
 	private Action<Void> beforeRun;
-	private Map<String, Supplier<T>> candidates;
+	private Map<String, B> candidates;
+	private Map<String, Long> candidateTimeoutNanos = new HashMap<>();
 	private Function<T, ?> cleaner;
 	private Comparator<T> comparator;
 	private int concurrentTasks;
 	private Map<String, Object> contexts = new HashMap<>();
-	private Supplier<T> control;
+	private B control;
 	private Supplier<Boolean> enabled;
+	private ExecutionMode executionMode = ExecutionMode.CONCURRENT;
+	private IExperimentExecutor executor;
+	private ExperimentGovernor governor;
 	private List<DoubleFunction<T, T, Boolean>> ignores = new ArrayList<>();
+	private boolean measureResourceUsage;
 	private String name;
+	private OrderingPolicy orderingPolicy = OrderingPolicy.RANDOM;
+	private ExperimentRecorder<?, T> recorder;
 	private Supplier<Boolean> runIf;
+	private ISampler sampler;
 	private DoubleAction<Operation, Exception> thrown;
 	private boolean throwOnMismatches;
+	private Long timeoutNanos;
 }
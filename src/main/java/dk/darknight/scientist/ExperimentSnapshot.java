@@ -0,0 +1,48 @@
+package dk.darknight.scientist;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.Value;
+
+/**
+ * The latencies and mismatches of an experiment within the window of a
+ * {@link HistogramPublisher}.
+ */
+@Value
+public class ExperimentSnapshot {
+	/** Gets the name of the experiment. */
+	String experimentName;
+
+	/**
+	 * Gets the control latencies. The mismatches count the runs where any
+	 * candidate mismatched.
+	 */
+	HistogramSnapshot control;
+
+	/** Gets the latencies and mismatches of each candidate by name. */
+	ImmutableMap<String, HistogramSnapshot> candidates;
+
+	/** Gets the number of runs whose candidates were skipped since the publisher was created. */
+	long skipped;
+
+	/** Gets the share of runs where any candidate mismatched, between 0 and 1. */
+	public double getMismatchRate() {
+		return control.getMismatchRate();
+	}
+
+	/**
+	 * Gets how much slower a candidate is than the control at a percentile.
+	 * 
+	 * @param candidateName
+	 *           the name of the candidate
+	 * @param percentile
+	 *           the percentile, between 0 and 100
+	 * @return the difference in nanoseconds, negative if the candidate is faster
+	 */
+	public long getLatencyDelta(String candidateName, double percentile) {
+		HistogramSnapshot candidate = candidates.get(candidateName);
+		Preconditions.checkArgument(candidate != null, "Unknown candidate %s", candidateName);
+		return candidate.getPercentile(percentile) - control.getPercentile(percentile);
+	}
+}
@@ -0,0 +1,45 @@
+package dk.darknight.scientist;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.Value;
+
+/** The outcome of an experiment over the flush interval of an {@link AggregatingPublisher}. */
+@Value
+public class ExperimentSummary {
+	/** Gets the name of the experiment. */
+	String experimentName;
+
+	/** Gets the time the interval started, in milliseconds since the epoch. */
+	long startMillis;
+
+	/** Gets the time the interval ended, in milliseconds since the epoch. */
+	long endMillis;
+
+	/** Gets the number of published runs. */
+	long runs;
+
+	/**
+	 * Gets the number of runs where all candidates matched the control, without
+	 * ignoring any mismatch. Runs with an ignored mismatch are counted by
+	 * {@link #getIgnored()} instead, so the runs are the sum of the matches, the
+	 * mismatches and the ignored runs.
+	 */
+	long matches;
+
+	/** Gets the number of runs where any candidate did not match the control. */
+	long mismatches;
+
+	/** Gets the number of runs where a mismatch was ignored. */
+	long ignored;
+
+	/** Gets the number of runs whose candidates were skipped to shed load. */
+	long skipped;
+
+	/** Gets the outcome of each candidate by name. */
+	ImmutableMap<String, CandidateSummary> candidates;
+
+	/** Gets the first few mismatched results of the interval, for debugging. */
+	ImmutableList<Result<?, ?>> mismatchSamples;
+}
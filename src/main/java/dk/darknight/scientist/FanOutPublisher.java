@@ -0,0 +1,250 @@
+package dk.darknight.scientist;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.Builder;
+import lombok.Singular;
+
+/**
+ * A publisher that hands every result to several named sinks, e.g. metrics,
+ * logs and a mismatch store.
+ * <p>
+ * Each sink has its own bounded queue and worker thread, so a slow sink never
+ * holds up the others. Results that do not fit in a sink's queue are dropped
+ * for that sink. A sink that fails {@link #failureThreshold} times in a row is
+ * quarantined: results are skipped for it for {@link #initialBackoffMillis},
+ * after which the next result is tried. Every further failure doubles the
+ * quarantine, up to {@link #maximumBackoffMillis}, and a success ends it.
+ * Failures are logged when a sink is quarantined, and are never reported to
+ * the experiments.
+ * </p>
+ * <p>
+ * Workers are daemon threads named {@code scientist-sink-N}, started when the
+ * first result is published.
+ * </p>
+ *
+ * <pre>
+ * Scientist.setResultPublisher(FanOutPublisher.builder()
+ * 		.sink("log", LogPublisher.DEFAULT)
+ * 		.sink("histograms", histograms)
+ * 		.build());
+ * </pre>
+ */
+public class FanOutPublisher implements IResultPublisher {
+	private static final Logger log = LoggerFactory.getLogger(FanOutPublisher.class);
+
+	/** The number of results that may wait for each sink. */
+	private final int capacity;
+
+	/** The number of consecutive failures after which a sink is quarantined. */
+	private final int failureThreshold;
+
+	/** The number of milliseconds a sink is first quarantined for. */
+	private final long initialBackoffMillis;
+
+	/** The maximum number of milliseconds a sink is quarantined for. */
+	private final long maximumBackoffMillis;
+
+	private final ImmutableList<Sink> sinks;
+	private final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("scientist-sink-%d")
+			.setDaemon(true).build();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean shutdown;
+
+	/** Builds fan-out publishers. */
+	public static class FanOutPublisherBuilder {
+		private int capacity = 1024;
+		private int failureThreshold = 3;
+		private long initialBackoffMillis = 1000;
+		private long maximumBackoffMillis = 60000;
+	}
+
+	@Builder
+	private FanOutPublisher(@Singular ImmutableMap<String, IResultPublisher> sinks, int capacity,
+			int failureThreshold, long initialBackoffMillis, long maximumBackoffMillis) {
+		Preconditions.checkArgument(!sinks.isEmpty(), "at least one sink is required");
+		Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+		Preconditions.checkArgument(failureThreshold > 0, "failureThreshold must be greater than 0");
+		Preconditions.checkArgument(initialBackoffMillis > 0, "initialBackoffMillis must be greater than 0");
+		Preconditions.checkArgument(maximumBackoffMillis >= initialBackoffMillis,
+				"maximumBackoffMillis must not be less than initialBackoffMillis");
+		this.capacity = capacity;
+		this.failureThreshold = failureThreshold;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maximumBackoffMillis = maximumBackoffMillis;
+
+		ImmutableList.Builder<Sink> builder = ImmutableList.builder();
+		for (Map.Entry<String, IResultPublisher> entry : sinks.entrySet()) {
+			builder.add(new Sink(entry.getKey(), entry.getValue()));
+		}
+		this.sinks = builder.build();
+	}
+
+	@Override
+	public <T, TClean> void publish(Result<T, TClean> result) {
+		if (shutdown) {
+			for (Sink sink : sinks) {
+				sink.dropped.increment();
+			}
+			return;
+		}
+		start();
+
+		long now = System.nanoTime();
+		for (Sink sink : sinks) {
+			if (sink.isQuarantined(now)) {
+				sink.quarantined.increment();
+			} else if (!sink.queue.offer(result)) {
+				sink.dropped.increment();
+			}
+		}
+	}
+
+	@Override
+	public void publishSkipped(String experimentName) {
+		long now = System.nanoTime();
+		for (Sink sink : sinks) {
+			if (sink.isQuarantined(now)) {
+				continue;
+			}
+			try {
+				sink.publisher.publishSkipped(experimentName);
+			} catch (Exception e) {
+				sink.failed.increment();
+			}
+		}
+	}
+
+	/** Gets the counters of each sink, by name. */
+	public ImmutableMap<String, SinkStatistics> getStatistics() {
+		ImmutableMap.Builder<String, SinkStatistics> builder = ImmutableMap.builder();
+		long now = System.nanoTime();
+		for (Sink sink : sinks) {
+			builder.put(sink.name,
+					new SinkStatistics(sink.name, sink.published.sum(), sink.dropped.sum(), sink.failed.sum(),
+							sink.quarantined.sum(), sink.queue.size(), sink.totalLatencyNanos.sum(),
+							sink.maximumLatencyNanos.get(), sink.isQuarantined(now)));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Stop the workers once the results already queued are published. Results
+	 * published afterwards are dropped.
+	 */
+	public void shutdown() {
+		shutdown = true;
+	}
+
+	private void start() {
+		if (started.get() || !started.compareAndSet(false, true)) {
+			return;
+		}
+
+		for (final Sink sink : sinks) {
+			threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					sink.work();
+				}
+			}).start();
+		}
+	}
+
+	/** A sink, with its queue and counters. */
+	private final class Sink {
+		private final String name;
+		private final IResultPublisher publisher;
+		private final BlockingQueue<Result<?, ?>> queue = new ArrayBlockingQueue<>(capacity);
+
+		private final LongAdder published = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder quarantined = new LongAdder();
+		private final LongAdder totalLatencyNanos = new LongAdder();
+		private final AtomicLong maximumLatencyNanos = new AtomicLong();
+
+		/** The {@link System#nanoTime()} the quarantine ends, or 0 when not quarantined. */
+		private volatile long quarantinedUntilNanos;
+
+		// Only touched by the worker
+		private int consecutiveFailures;
+		private long backoffMillis;
+
+		private Sink(String name, IResultPublisher publisher) {
+			this.name = name;
+			this.publisher = publisher;
+		}
+
+		private boolean isQuarantined(long now) {
+			long until = quarantinedUntilNanos;
+			return until != 0 && now - until < 0;
+		}
+
+		private void work() {
+			while (!shutdown || !queue.isEmpty()) {
+				Result<?, ?> result;
+				try {
+					result = queue.poll(1, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (result != null) {
+					publish(result);
+				}
+			}
+		}
+
+		private void publish(Result<?, ?> result) {
+			long start = System.nanoTime();
+			try {
+				publisher.publish(result);
+				record(System.nanoTime() - start);
+				published.increment();
+				consecutiveFailures = 0;
+				backoffMillis = 0;
+				quarantinedUntilNanos = 0;
+			} catch (Exception e) {
+				record(System.nanoTime() - start);
+				failed.increment();
+				if (++consecutiveFailures >= failureThreshold) {
+					quarantine(e);
+				}
+			}
+		}
+
+		private void record(long latencyNanos) {
+			totalLatencyNanos.add(latencyNanos);
+			if (latencyNanos > maximumLatencyNanos.get()) {
+				maximumLatencyNanos.set(latencyNanos);
+			}
+		}
+
+		/** Skip results for a while, including those already queued. */
+		private void quarantine(Exception cause) {
+			backoffMillis = backoffMillis == 0 ? initialBackoffMillis : Math.min(backoffMillis * 2, maximumBackoffMillis);
+			quarantinedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+			log.warn("Quarantining result publisher '{}' for {} ms after {} consecutive failures", name, backoffMillis,
+					consecutiveFailures, cause);
+
+			while (queue.poll() != null) {
+				quarantined.increment();
+			}
+		}
+	}
+}
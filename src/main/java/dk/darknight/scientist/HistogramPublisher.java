@@ -0,0 +1,142 @@
+package dk.darknight.scientist;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.NonNull;
+
+/**
+ * A publisher that keeps latency histograms of the control and each candidate
+ * of every experiment, over a sliding time window.
+ * <p>
+ * Recording is lock-free and each histogram uses a fixed amount of memory, so
+ * the publisher can take every result at high volume. Read the percentiles,
+ * latency deltas and mismatch rates with {@link #getSnapshot(String)}.
+ * Candidates that time out are counted as runs and as timeouts, but their
+ * latency is not recorded.
+ * </p>
+ */
+public class HistogramPublisher implements IResultPublisher {
+	private static final int SLICES = 6;
+
+	private final long windowNanos;
+	private final Ticker ticker;
+	private final ConcurrentMap<String, ExperimentHistograms> experiments = new ConcurrentHashMap<>();
+
+	/** Create a publisher with a window of one minute. */
+	public HistogramPublisher() {
+		this(1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Create a publisher.
+	 * 
+	 * @param window
+	 *           the length of the window
+	 * @param unit
+	 *           the unit of the window
+	 */
+	public HistogramPublisher(long window, @NonNull TimeUnit unit) {
+		this(window, unit, Ticker.systemTicker());
+	}
+
+	HistogramPublisher(long window, @NonNull TimeUnit unit, @NonNull Ticker ticker) {
+		Preconditions.checkArgument(window > 0, "window must be greater than 0");
+		this.windowNanos = unit.toNanos(window);
+		this.ticker = ticker;
+	}
+
+	@Override
+	public <T, TClean> void publish(Result<T, TClean> result) {
+		ExperimentHistograms histograms = histograms(result.getExperimentName());
+		histograms.control.record(result.getControl().getDurationNanos(), result.isMismatched());
+		for (Observation<T, TClean> candidate : result.getCandidates()) {
+			boolean mismatched = Result.containsInstance(result.getMismatchedObservations(), candidate);
+			SlidingHistogram histogram = histograms.candidate(candidate.getName());
+			if (candidate.isTimedOut()) {
+				// A timed out candidate has no latency of its own
+				histogram.recordTimeout(mismatched);
+			} else {
+				histogram.record(candidate.getDurationNanos(), mismatched);
+			}
+		}
+	}
+
+	@Override
+	public void publishSkipped(String experimentName) {
+		histograms(experimentName).skipped.incrementAndGet();
+	}
+
+	/**
+	 * Gets the latencies and mismatches of an experiment within the window.
+	 * 
+	 * @param experimentName
+	 *           the name of the experiment
+	 * @return the snapshot, or {@code null} if the experiment has not been
+	 *         published
+	 */
+	public ExperimentSnapshot getSnapshot(@NonNull String experimentName) {
+		ExperimentHistograms histograms = experiments.get(experimentName);
+		return histograms == null ? null : histograms.snapshot(experimentName);
+	}
+
+	/** Gets snapshots of all experiments that have been published, by name. */
+	public Map<String, ExperimentSnapshot> getSnapshots() {
+		ImmutableMap.Builder<String, ExperimentSnapshot> snapshots = ImmutableMap.builder();
+		for (Entry<String, ExperimentHistograms> entry : experiments.entrySet()) {
+			snapshots.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+		}
+		return snapshots.build();
+	}
+
+	private ExperimentHistograms histograms(String experimentName) {
+		ExperimentHistograms histograms = experiments.get(experimentName);
+		if (histograms == null) {
+			ExperimentHistograms created = new ExperimentHistograms();
+			histograms = experiments.putIfAbsent(experimentName, created);
+			if (histograms == null) {
+				histograms = created;
+			}
+		}
+		return histograms;
+	}
+
+	private SlidingHistogram newHistogram() {
+		return new SlidingHistogram(windowNanos, SLICES, ticker);
+	}
+
+	/** The histograms of one experiment. */
+	private final class ExperimentHistograms {
+		private final SlidingHistogram control = newHistogram();
+		private final ConcurrentMap<String, SlidingHistogram> candidates = new ConcurrentHashMap<>();
+		private final AtomicLong skipped = new AtomicLong();
+
+		private SlidingHistogram candidate(String name) {
+			SlidingHistogram histogram = candidates.get(name);
+			if (histogram == null) {
+				SlidingHistogram created = newHistogram();
+				histogram = candidates.putIfAbsent(name, created);
+				if (histogram == null) {
+					histogram = created;
+				}
+			}
+			return histogram;
+		}
+
+		private ExperimentSnapshot snapshot(String experimentName) {
+			ImmutableMap.Builder<String, HistogramSnapshot> snapshots = ImmutableMap.builder();
+			for (Entry<String, SlidingHistogram> entry : candidates.entrySet()) {
+				snapshots.put(entry.getKey(), entry.getValue().snapshot());
+			}
+			return new ExperimentSnapshot(experimentName, control.snapshot(), snapshots.build(), skipped.get());
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package dk.darknight.scientist;
+
+import com.google.common.base.Preconditions;
+
+import lombok.Getter;
+
+/**
+ * The latencies and mismatches of a behavior within the window of a
+ * {@link HistogramPublisher}.
+ */
+public final class HistogramSnapshot {
+	private final long[] counts;
+
+	/** The number of recorded runs. */
+	@Getter
+	private final long count;
+
+	/** The number of recorded runs that mismatched. */
+	@Getter
+	private final long mismatches;
+
+	/** The number of recorded runs that timed out, whose latency is not recorded. */
+	@Getter
+	private final long timeouts;
+
+	HistogramSnapshot(long[] counts, long count, long mismatches, long timeouts) {
+		this.counts = counts;
+		this.count = count;
+		this.mismatches = mismatches;
+		this.timeouts = timeouts;
+	}
+
+	/** Gets the share of recorded runs that mismatched, between 0 and 1. */
+	public double getMismatchRate() {
+		return count == 0 ? 0 : (double) mismatches / count;
+	}
+
+	/**
+	 * Gets a latency percentile.
+	 * 
+	 * @param percentile
+	 *           the percentile, between 0 and 100
+	 * @return the latency in nanoseconds below which the given percentage of
+	 *         runs completed, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return SlidingHistogram.valueOf(i);
+			}
+		}
+		return SlidingHistogram.valueOf(counts.length - 1);
+	}
+
+	/** Gets the median latency in nanoseconds. */
+	public long getP50() {
+		return getPercentile(50);
+	}
+
+	/** Gets the 90th percentile latency in nanoseconds. */
+	public long getP90() {
+		return getPercentile(90);
+	}
+
+	/** Gets the 99th percentile latency in nanoseconds. */
+	public long getP99() {
+		return getPercentile(99);
+	}
+
+	/** Gets the 99.9th percentile latency in nanoseconds. */
+	public long getP999() {
+		return getPercentile(99.9);
+	}
+
+	@Override
+	public String toString() {
+		return "HistogramSnapshot(count=" + count + ", mismatches=" + mismatches + ", timeouts=" + timeouts + ", p50=" + getP50() + ", p90="
+				+ getP90() + ", p99=" + getP99() + ", p999=" + getP999() + ")";
+	}
+}
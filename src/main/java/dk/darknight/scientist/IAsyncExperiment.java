@@ -0,0 +1,45 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.base.Supplier;
+
+/**
+ * Provides an interface for defining an asynchronous experiment.
+ * <p>
+ * The behaviors return futures instead of values. The suppliers are called on
+ * the calling thread and are expected to start their work and return without
+ * blocking.
+ * </p>
+ * 
+ * @param <T>
+ *            The return result for the experiment.
+ * @param <TClean>
+ *            The cleaned type of the experiment.
+ */
+public interface IAsyncExperiment<T, TClean> extends IExperimentBase<T, TClean> {
+	/**
+	 * Defines the operation to try.
+	 * 
+	 * @param name
+	 * @param candidate
+	 *            The delegate to execute.
+	 */
+	void attempt(String name, Supplier<CompletableFuture<T>> candidate);
+
+	/**
+	 * Defines the operation to try.
+	 * 
+	 * @param candidate
+	 *            The delegate to execute.
+	 */
+	void attempt(Supplier<CompletableFuture<T>> candidate);
+
+	/**
+	 * Defines the operation to actually use.
+	 * 
+	 * @param control
+	 *            The delegate to execute.
+	 */
+	void use(Supplier<CompletableFuture<T>> control);
+}
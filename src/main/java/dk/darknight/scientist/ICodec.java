@@ -0,0 +1,29 @@
+package dk.darknight.scientist;
+
+/**
+ * Provides an interface for turning values into bytes and back, used to record
+ * the runs of an experiment, see {@link ExperimentRecorder}. See
+ * {@link Codecs} for the built-in implementations.
+ * 
+ * @param <V>
+ *           The type of the values.
+ */
+public interface ICodec<V> {
+	/**
+	 * Encode a value.
+	 * 
+	 * @param value
+	 *           The value, which may be <code>null</code>.
+	 * @return the bytes of the value.
+	 */
+	byte[] encode(V value);
+
+	/**
+	 * Decode a value.
+	 * 
+	 * @param bytes
+	 *           Bytes returned by {@link #encode(Object)}.
+	 * @return the value.
+	 */
+	V decode(byte[] bytes);
+}
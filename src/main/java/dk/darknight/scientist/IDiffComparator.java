@@ -0,0 +1,37 @@
+package dk.darknight.scientist;
+
+import java.util.Comparator;
+
+/**
+ * Provides an interface for comparators that can tell where two results
+ * differ.
+ * <p>
+ * When an experiment compares with a diffing comparator, the difference
+ * between the control and a mismatched candidate is kept on the candidate's
+ * observation, so publishers can report it. See {@link StructuralComparator}
+ * for the built-in implementation.
+ * </p>
+ *
+ * @param <T>
+ *           The return type of the experiment
+ */
+public interface IDiffComparator<T> extends Comparator<T> {
+	/**
+	 * Find the first difference between the result of the control and the
+	 * result of a candidate.
+	 * 
+	 * @param control
+	 *           The result of the control.
+	 * @param candidate
+	 *           The result of the candidate.
+	 * @return the first difference, or <code>null</code> if the results are
+	 *         equivalent.
+	 */
+	Difference diff(T control, T candidate);
+
+	/** Compares by diffing. A zero return value means there is no difference. */
+	@Override
+	default int compare(T control, T candidate) {
+		return diff(control, candidate) == null ? 0 : -1;
+	}
+}
@@ -0,0 +1,154 @@
+package dk.darknight.scientist;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+
+import dk.darknight.scientist.functions.Action;
+import dk.darknight.scientist.functions.DoubleAction;
+import dk.darknight.scientist.functions.DoubleFunction;
+
+/**
+ * Provides the settings shared by synchronous and asynchronous experiments.
+ * 
+ * @param <T>
+ *            The return result for the experiment.
+ * @param <TClean>
+ *            The cleaned type of the experiment.
+ */
+public interface IExperimentBase<T, TClean> {
+	/**
+	 * Defines data to publish with results.
+	 * 
+	 * @param key
+	 *            The name of the context
+	 * @param data
+	 *            The context data
+	 */
+	void addContext(String key, Object data);
+
+	/**
+	 * Define any expensive setup here before the experiment is run.
+	 * 
+	 * @param action
+	 */
+	void beforeRun(Action<Void> action);
+
+	/**
+	 * Defines a custom func used to compare results.
+	 * 
+	 * @param comparator
+	 */
+	void compare(Comparator<T> comparator);
+
+	/**
+	 * Defines the check to run to determine if mismatches should be ignored.
+	 * 
+	 * @param block
+	 *            The delegate to execute.
+	 */
+	void ignore(DoubleFunction<T, T, Boolean> block);
+
+	/** Whether to throw when the control and candidate mismatch. */
+	boolean isThrowOnMismatches();
+
+	/**
+	 * Defines the check to run to determine if the experiment should run.
+	 * 
+	 * @param check
+	 *            The delegate to evaluate.
+	 */
+	void runIf(Supplier<Boolean> check);
+
+	/**
+	 * Defines the sampler deciding which runs of the experiment are sampled.
+	 * Runs must also be sampled by the sampler configured with
+	 * {@link Scientist#setSampler(ISampler)}.
+	 * 
+	 * @param sampler
+	 *            The sampler, e.g. one of the {@link Samplers}.
+	 */
+	void sample(ISampler sampler);
+
+	/**
+	 * Defines the governor that sheds the load of this experiment, instead of
+	 * the governor configured with
+	 * {@link Scientist#setGovernor(ExperimentGovernor)}.
+	 * 
+	 * @param governor
+	 *            The governor to use.
+	 */
+	void setGovernor(ExperimentGovernor governor);
+
+	/**
+	 * Defines the order in which the behaviors are started. Defaults to
+	 * {@link OrderingPolicy#RANDOM}.
+	 * 
+	 * @param orderingPolicy
+	 *            The ordering policy.
+	 */
+	void setOrderingPolicy(OrderingPolicy orderingPolicy);
+
+	/**
+	 * Set this flag to throw on experiment mismatches.
+	 * <p>
+	 * This causes all science mismatches to throw a {@link MismatchException}.
+	 * This is intended for test environments and should not be enabled in a
+	 * production environment.
+	 * </p>
+	 * <p>
+	 * <em>Note that this forces synchronous reporting, meaning that the
+	 * experiment will block until all observations are complete.</em>
+	 * </p>
+	 * 
+	 * @param throwOnMismatches
+	 *            Whether to throw when the control and candidate mismatch.
+	 */
+	void setThrowOnMismatches(boolean throwOnMismatches);
+
+	/**
+	 * Defines how long the candidates are given to complete, instead of the
+	 * timeout configured with {@link Scientist#setDefaultTimeout(long, TimeUnit)}.
+	 * Candidates that do not complete in time are cancelled, interrupting the
+	 * thread running them, and are reported as timed out.
+	 * 
+	 * @param timeout
+	 *            The timeout.
+	 * @param unit
+	 *            The unit of the timeout.
+	 */
+	void setTimeout(long timeout, TimeUnit unit);
+
+	/**
+	 * Defines how long a single candidate is given to complete, overriding the
+	 * timeout of the experiment.
+	 * 
+	 * @param candidateName
+	 *            The name of the candidate.
+	 * @param timeout
+	 *            The timeout.
+	 * @param unit
+	 *            The unit of the timeout.
+	 */
+	void setTimeout(String candidateName, long timeout, TimeUnit unit);
+
+	/**
+	 * Defines the exception handler when an exception is thrown during an
+	 * experiment.
+	 * 
+	 * @param block
+	 *            The delegate to handle exceptions thrown from an experiment.
+	 */
+	void thrown(DoubleAction<Operation, Exception> block);
+
+	/**
+	 * Provides an interface for defining a synchronous experiment that provides
+	 * a clean value to publish.
+	 * 
+	 * @param cleaner
+	 *            a method that provides a clean value to publish.
+	 */
+	void clean(Function<T, TClean> cleaner);
+}
@@ -0,0 +1,56 @@
+package dk.darknight.scientist;
+
+import com.google.common.base.Function;
+
+/**
+ * Provides an interface for defining an experiment that is compiled once and
+ * run many times, see {@link Scientist#compile(String, dk.darknight.scientist.functions.ExperimentDefinitionFunction)}.
+ * <p>
+ * The behaviors take the input of each run as their argument, so they need not
+ * capture it.
+ * </p>
+ * 
+ * @param <I>
+ *            The input type of the experiment.
+ * @param <T>
+ *            The return result for the experiment.
+ * @param <TClean>
+ *            The cleaned type of the experiment.
+ */
+public interface IExperimentDefinition<I, T, TClean> extends ISynchronousExperimentBase<T, TClean> {
+	/**
+	 * Defines the operation to try.
+	 * 
+	 * @param name
+	 * @param candidate
+	 *            The delegate to execute.
+	 */
+	void attempt(String name, Function<I, T> candidate);
+
+	/**
+	 * Defines the operation to try.
+	 * 
+	 * @param candidate
+	 *            The delegate to execute.
+	 */
+	void attempt(Function<I, T> candidate);
+
+	/**
+	 * Records the runs instead of running the candidates, so the candidates can
+	 * be replayed later, see {@link ExperimentReplayer}. Only the control runs,
+	 * and runs that would have run the candidates are recorded with their
+	 * input, contexts and control's value.
+	 * 
+	 * @param recorder
+	 *            The recorder.
+	 */
+	void record(ExperimentRecorder<I, T> recorder);
+
+	/**
+	 * Defines the operation to actually use.
+	 * 
+	 * @param control
+	 *            The delegate to execute.
+	 */
+	void use(Function<I, T> control);
+}
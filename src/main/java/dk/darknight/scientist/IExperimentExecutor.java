@@ -0,0 +1,33 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Provides an interface for executing the behaviors of experiments.
+ * <p>
+ * An executor is shared by all experiments that do not define their own, so
+ * implementations must be thread safe and should reuse their worker threads.
+ * When the executor is saturated, {@link #execute(Runnable)} must throw a
+ * {@link RejectedExecutionException} rather than block the caller.
+ * </p>
+ */
+public interface IExperimentExecutor extends Executor {
+	/** Gets the number of behaviors currently executing. */
+	int getActiveCount();
+
+	/**
+	 * Gets the maximum number of behaviors that may execute at the same time
+	 * across all experiments.
+	 */
+	int getMaximumConcurrency();
+
+	/** Gets the number of behaviors waiting for a worker thread. */
+	int getQueueDepth();
+
+	/**
+	 * Gets the number of behaviors that were rejected because the executor was
+	 * saturated.
+	 */
+	long getRejectedCount();
+}
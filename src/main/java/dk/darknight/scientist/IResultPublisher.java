@@ -14,4 +14,19 @@ public interface IResultPublisher {
 	 *           The result of the experiment.
 	 */
 	<T, TClean> void publish(Result<T, TClean> result);
+
+	/**
+	 * Reports a run whose candidates were skipped to shed load, see
+	 * {@link ExperimentGovernor}.
+	 * <p>
+	 * This is called on the thread running the experiment, so implementations
+	 * must be cheap, e.g. increment a counter. The default implementation does
+	 * nothing.
+	 * </p>
+	 * 
+	 * @param experimentName
+	 *           The name of the experiment.
+	 */
+	default void publishSkipped(String experimentName) {
+	}
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package dk.darknight.scientist;
+
+import java.util.Map;
+
+/**
+ * Provides an interface for deciding which experiment runs are sampled.
+ * <p>
+ * Samplers are called on the calling thread for every run of an experiment,
+ * so implementations must be thread safe and should avoid locking. See
+ * {@link Samplers} for the built-in implementations.
+ * </p>
+ */
+public interface ISampler {
+	/**
+	 * Decide whether to run the candidates of an experiment.
+	 * 
+	 * @param experimentName
+	 *           The name of the experiment.
+	 * @param contexts
+	 *           The context data supplied to the experiment.
+	 * @return <code>true</code>, if the experiment should run.
+	 */
+	boolean sample(String experimentName, Map<String, Object> contexts);
+}
@@ -0,0 +1,15 @@
+package dk.darknight.scientist;
+
+/**
+ * Provides an interface for publishing the summaries of an
+ * {@link AggregatingPublisher}.
+ */
+public interface ISummaryPublisher {
+	/**
+	 * Publishes the summary of an experiment over a flush interval.
+	 * 
+	 * @param summary
+	 *           The summary of the experiment.
+	 */
+	void publish(ExperimentSummary summary);
+}
@@ -0,0 +1,48 @@
+package dk.darknight.scientist;
+
+/**
+ * Provides the settings shared by experiments whose behaviors run on an
+ * {@link IExperimentExecutor}.
+ * 
+ * @param <T>
+ *            The return result for the experiment.
+ * @param <TClean>
+ *            The cleaned type of the experiment.
+ */
+public interface ISynchronousExperimentBase<T, TClean> extends IExperimentBase<T, TClean> {
+	/**
+	 * Defines where the control runs relative to the candidates. Defaults to
+	 * {@link ExecutionMode#CONCURRENT}.
+	 * <p>
+	 * Running the control on the calling thread means it never waits for a
+	 * worker, so the experiment adds next to no latency to the control path.
+	 * </p>
+	 * 
+	 * @param executionMode
+	 *            The execution mode.
+	 */
+	void setExecutionMode(ExecutionMode executionMode);
+
+	/**
+	 * Defines the executor used to run the behaviors of this experiment,
+	 * instead of the executor configured with
+	 * {@link Scientist#setExperimentExecutor(IExperimentExecutor)}.
+	 * 
+	 * @param executor
+	 *            The executor to use.
+	 */
+	void setExecutor(IExperimentExecutor executor);
+
+	/**
+	 * Defines whether to measure the CPU time and the bytes allocated by each
+	 * behavior. Defaults to {@code false}.
+	 * <p>
+	 * Measuring costs a few calls into the JVM per behavior. Resources that the
+	 * JVM cannot measure are reported as {@code -1}.
+	 * </p>
+	 * 
+	 * @param measureResourceUsage
+	 *            Whether to measure resource usage.
+	 */
+	void setMeasureResourceUsage(boolean measureResourceUsage);
+}
@@ -0,0 +1,22 @@
+package dk.darknight.scientist;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.Value;
+
+/** A mismatched result read from the journal written by {@link JournalPublisher}. */
+@Value
+public class JournalEntry {
+	/** Gets the time the entry was written, in milliseconds since the epoch. */
+	long timestampMillis;
+
+	/** Gets the name of the experiment. */
+	String experimentName;
+
+	/** Gets the context data of the run, as strings. */
+	ImmutableMap<String, String> contexts;
+
+	/** Gets the observations, the control included. */
+	ImmutableList<JournalObservation> observations;
+}
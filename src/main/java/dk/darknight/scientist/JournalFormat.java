@@ -0,0 +1,154 @@
+package dk.darknight.scientist;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Utf8;
+
+/**
+ * The binary format of the mismatch journal written by {@link JournalPublisher}
+ * and read by {@link JournalReader}.
+ * 
+ * <pre>
+ * segment     := MAGIC:int VERSION:short 0:short record* 0:int
+ * record      := length:int body                        (a length of 0 ends the segment)
+ * body        := timestampMillis:long experiment:string contexts:varint (key:string value:string)*
+ *                observations:varint observation*
+ * observation := name:string flags:byte durationNanos:varlong
+ *                (exceptionClass:string message:string | value:string) difference:string?
+ * string      := (length + 1):varint utf8*               (a length of 0 is null)
+ * </pre>
+ * <p>
+ * The length of a record is written after its body, so a reader never sees a
+ * partly written record. Segments are named by a sequence number, so they
+ * sort in the order they were written.
+ * </p>
+ */
+final class JournalFormat {
+	static final int MAGIC = 0x534A4E4C; // "SJNL"
+	static final short VERSION = 1;
+	static final int HEADER_BYTES = 8;
+
+	static final int CONTROL = 1;
+	static final int MISMATCHED = 1 << 1;
+	static final int THROWN = 1 << 2;
+	static final int TIMED_OUT = 1 << 3;
+	static final int DIFFERENCE = 1 << 4;
+
+	/** Strings are cut to this many characters, so a record stays well below the size of a segment. */
+	static final int MAXIMUM_STRING_CHARS = 1 << 16;
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("mismatches-(\\d{12})\\.journal");
+
+	private JournalFormat() {
+	}
+
+	/** Gets the file name of a segment. */
+	static String segmentName(long sequence) {
+		return String.format("mismatches-%012d.journal", sequence);
+	}
+
+	/** Gets the segments in a directory, in the order they were written. */
+	static List<Path> segments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return segments;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				if (SEGMENT_NAME.matcher(file.getFileName().toString()).matches()) {
+					segments.add(file);
+				}
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	/** Gets the sequence number of a segment. */
+	static long sequence(Path segment) {
+		Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+		return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+	}
+
+	static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static long getVarLong(ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalStateException("Malformed journal: variable length number is too long");
+	}
+
+	/** Encode a string straight into the buffer, without copying it to an array first. */
+	static void putString(ByteBuffer buffer, CharsetEncoder encoder, String value) {
+		if (value == null) {
+			putVarLong(buffer, 0);
+			return;
+		}
+		CharSequence chars = value.length() > MAXIMUM_STRING_CHARS ? value.subSequence(0, MAXIMUM_STRING_CHARS)
+				: value;
+
+		int length;
+		try {
+			length = Utf8.encodedLength(chars);
+		} catch (IllegalArgumentException e) {
+			// Unpaired surrogates are replaced, which changes the length
+			byte[] bytes = chars.toString().getBytes(StandardCharsets.UTF_8);
+			putVarLong(buffer, bytes.length + 1);
+			buffer.put(bytes);
+			return;
+		}
+
+		putVarLong(buffer, length + 1);
+		if (buffer.remaining() < length) {
+			throw new BufferOverflowException();
+		}
+		encoder.reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(chars), buffer, true);
+		if (result.isOverflow() || encoder.flush(buffer).isOverflow()) {
+			throw new BufferOverflowException();
+		}
+	}
+
+	static String getString(ByteBuffer buffer) {
+		int length = (int) getVarLong(buffer) - 1;
+		if (length < 0) {
+			return null;
+		}
+		ByteBuffer bytes = buffer.slice();
+		bytes.limit(length);
+		buffer.position(buffer.position() + length);
+		return StandardCharsets.UTF_8.decode(bytes).toString();
+	}
+
+	static CharsetEncoder newEncoder() {
+		return StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+}
@@ -0,0 +1,39 @@
+package dk.darknight.scientist;
+
+import lombok.Value;
+
+/** An observation of an entry in the mismatch journal, see {@link JournalEntry}. */
+@Value
+public class JournalObservation {
+	/** Gets the name of the behavior. */
+	String name;
+
+	/** Gets whether this is the control. */
+	boolean control;
+
+	/** Gets whether this candidate mismatched the control. */
+	boolean mismatched;
+
+	/** Gets whether the behavior timed out. */
+	boolean timedOut;
+
+	/** Gets the wall clock time the behavior took, in nanoseconds. */
+	long durationNanos;
+
+	/** Gets the cleaned value as a string, or <code>null</code> if the behavior threw. */
+	String value;
+
+	/** Gets the class name of the exception thrown by the behavior, or <code>null</code>. */
+	String exceptionClass;
+
+	/** Gets the message of the exception thrown by the behavior, or <code>null</code>. */
+	String exceptionMessage;
+
+	/** Gets the summary of the first difference from the control, or <code>null</code>. */
+	String difference;
+
+	/** Gets whether the behavior threw. */
+	public boolean isThrown() {
+		return exceptionClass != null;
+	}
+}
@@ -0,0 +1,282 @@
+package dk.darknight.scientist;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * A publisher that writes mismatched results to a journal of append-only
+ * segment files in a local directory, see {@link JournalReader}.
+ * <p>
+ * Each entry holds the experiment's contexts and, for every observation, its
+ * duration and its cleaned value or exception. Results are queued and written
+ * by a daemon thread named {@code scientist-journal-N}, which also compares
+ * them, so neither the calling thread nor the publishing pipeline waits for
+ * the disk. Entries are encoded straight into memory-mapped segments. When a
+ * segment is full, the next one is started, and the oldest segments are
+ * deleted to keep at most {@code maximumSegments}. Results that do not fit in
+ * the queue are dropped.
+ * </p>
+ * <p>
+ * Entries reach the disk when the operating system flushes the mapped pages,
+ * when a segment is full, and on {@link #close()}.
+ * </p>
+ */
+public class JournalPublisher implements IResultPublisher {
+	private static final Logger log = LoggerFactory.getLogger(JournalPublisher.class);
+
+	private static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+	private static final int DEFAULT_MAXIMUM_SEGMENTS = 16;
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final int maximumSegments;
+	private final BlockingQueue<Result<?, ?>> queue;
+	private final Thread writer;
+	private volatile boolean closed;
+
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	// Only touched by the writer
+	private final CharsetEncoder encoder = JournalFormat.newEncoder();
+	private MappedByteBuffer segment;
+	private long sequence;
+
+	/**
+	 * Create a publisher with 16 segments of 64 MiB.
+	 * 
+	 * @param directory
+	 *           the directory of the journal, which is created if missing
+	 * @throws IOException
+	 *            if the directory cannot be created or listed
+	 */
+	public JournalPublisher(@NonNull Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_MAXIMUM_SEGMENTS, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a publisher.
+	 * 
+	 * @param directory
+	 *           the directory of the journal, which is created if missing
+	 * @param segmentBytes
+	 *           the size of each segment file
+	 * @param maximumSegments
+	 *           the number of segments kept
+	 * @param capacity
+	 *           the number of results that may wait to be written
+	 * @throws IOException
+	 *            if the directory cannot be created or listed
+	 */
+	public JournalPublisher(@NonNull Path directory, int segmentBytes, int maximumSegments, int capacity)
+			throws IOException {
+		Preconditions.checkArgument(segmentBytes > JournalFormat.HEADER_BYTES, "segmentBytes is too small");
+		Preconditions.checkArgument(maximumSegments > 0, "maximumSegments must be greater than 0");
+		Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+		this.directory = Files.createDirectories(directory);
+		this.segmentBytes = segmentBytes;
+		this.maximumSegments = maximumSegments;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		// Never append to a segment of an earlier process
+		List<Path> segments = JournalFormat.segments(directory);
+		sequence = segments.isEmpty() ? 0 : JournalFormat.sequence(segments.get(segments.size() - 1));
+
+		writer = new ThreadFactoryBuilder().setNameFormat("scientist-journal-%d").setDaemon(true).build()
+				.newThread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				});
+		writer.start();
+	}
+
+	@Override
+	public <T, TClean> void publish(Result<T, TClean> result) {
+		if (closed || !queue.offer(result)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	/** Gets the number of mismatched results written to the journal. */
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	/** Gets the number of results dropped because the queue was full or the publisher was closed. */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/** Gets the number of results that could not be written. */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Write the results already queued, flush the current segment to disk and
+	 * stop the writer. Results published afterwards are dropped.
+	 * 
+	 * @throws InterruptedException
+	 *            if interrupted while waiting for the writer
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		writer.join();
+	}
+
+	private void work() {
+		while (!closed || !queue.isEmpty()) {
+			Result<?, ?> result;
+			try {
+				result = queue.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (result == null) {
+				continue;
+			}
+
+			try {
+				if (result.isMismatched()) {
+					write(result);
+					written.incrementAndGet();
+				}
+			} catch (Exception e) {
+				failed.incrementAndGet();
+				log.warn("Failed to write experiment result to the journal in {}", directory, e);
+			}
+		}
+
+		if (segment != null) {
+			segment.force();
+		}
+	}
+
+	/** Write an entry, starting a new segment if it does not fit in the current one. */
+	private void write(Result<?, ?> result) throws IOException {
+		long timestampMillis = System.currentTimeMillis();
+		if (segment == null) {
+			roll();
+		}
+
+		int start = segment.position();
+		try {
+			encode(result, timestampMillis);
+			return;
+		} catch (BufferOverflowException e) {
+			// The length is written last, so the partial entry ends the segment
+			segment.position(start);
+		}
+
+		roll();
+		try {
+			encode(result, timestampMillis);
+		} catch (BufferOverflowException e) {
+			// Leave the partial entry to end the segment, and start a new one for the next entry
+			segment.force();
+			segment = null;
+			throw new IOException("The entry is larger than a journal segment", e);
+		}
+	}
+
+	private void encode(Result<?, ?> result, long timestampMillis) {
+		MappedByteBuffer buffer = segment;
+		int lengthPosition = buffer.position();
+		buffer.putInt(0);
+		buffer.putLong(timestampMillis);
+		JournalFormat.putString(buffer, encoder, result.getExperimentName());
+
+		Map<String, Object> contexts = result.getContexts();
+		JournalFormat.putVarLong(buffer, contexts.size());
+		for (Map.Entry<String, Object> context : contexts.entrySet()) {
+			JournalFormat.putString(buffer, encoder, context.getKey());
+			JournalFormat.putString(buffer, encoder, String.valueOf(context.getValue()));
+		}
+
+		List<? extends Observation<?, ?>> observations = result.getObservations();
+		List<? extends Observation<?, ?>> mismatched = result.getMismatchedObservations();
+		JournalFormat.putVarLong(buffer, observations.size());
+		for (Observation<?, ?> o : observations) {
+			int flags = 0;
+			if (o == result.getControl()) {
+				flags |= JournalFormat.CONTROL;
+			}
+			if (Result.containsInstance(mismatched, o)) {
+				flags |= JournalFormat.MISMATCHED;
+			}
+			if (o.isThrown()) {
+				flags |= JournalFormat.THROWN;
+			}
+			if (o.isTimedOut()) {
+				flags |= JournalFormat.TIMED_OUT;
+			}
+			if (o.getDifference() != null) {
+				flags |= JournalFormat.DIFFERENCE;
+			}
+
+			JournalFormat.putString(buffer, encoder, o.getName());
+			buffer.put((byte) flags);
+			JournalFormat.putVarLong(buffer, o.getDurationNanos());
+			if (o.isThrown()) {
+				JournalFormat.putString(buffer, encoder, Observation.exceptionClassName(o.getException()));
+				JournalFormat.putString(buffer, encoder, o.getException().getMessage());
+			} else {
+				JournalFormat.putString(buffer, encoder, String.valueOf(o.getCleanedValue()));
+			}
+			if (o.getDifference() != null) {
+				JournalFormat.putString(buffer, encoder, o.getDifference().getSummary());
+			}
+		}
+
+		// Leave room for the length that ends the segment, then commit the entry
+		if (buffer.remaining() < Integer.BYTES) {
+			throw new BufferOverflowException();
+		}
+		buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+	}
+
+	/** Flush the current segment, start the next one and delete the oldest. */
+	private void roll() throws IOException {
+		if (segment != null) {
+			segment.force();
+		}
+
+		Path file = directory.resolve(JournalFormat.segmentName(++sequence));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+		}
+		segment.putInt(JournalFormat.MAGIC);
+		segment.putShort(JournalFormat.VERSION);
+		segment.putShort((short) 0);
+
+		List<Path> segments = JournalFormat.segments(directory);
+		for (int i = 0; i < segments.size() - maximumSegments; i++) {
+			Files.deleteIfExists(segments.get(i));
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package dk.darknight.scientist;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import lombok.NonNull;
+
+/**
+ * Reads the mismatch journal written by {@link JournalPublisher}.
+ * <p>
+ * Segments are memory-mapped and scanned in the order they were written.
+ * Entries of other experiments or outside the time range are skipped without
+ * being decoded. The journal may be read while it is written; entries are
+ * visible once complete.
+ * </p>
+ * <p>
+ * The reader doubles as a command line tool that prints the matching entries:
+ * </p>
+ * 
+ * <pre>
+ * java -cp scientist.jar dk.darknight.scientist.JournalReader &lt;directory&gt; [--experiment=NAME] [--from=INSTANT] [--to=INSTANT]
+ * </pre>
+ * 
+ * where the instants are ISO-8601, e.g. <code>2020-01-31T12:00:00Z</code>.
+ */
+public class JournalReader {
+	private final Path directory;
+
+	/**
+	 * Create a reader.
+	 * 
+	 * @param directory
+	 *           the directory of the journal
+	 */
+	public JournalReader(@NonNull Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Read the entries of an experiment within a time range.
+	 * 
+	 * @param experimentName
+	 *           the name of the experiment, or <code>null</code> for all
+	 *           experiments
+	 * @param fromMillis
+	 *           the earliest time of an entry, inclusive, in milliseconds since
+	 *           the epoch
+	 * @param toMillis
+	 *           the latest time of an entry, exclusive, in milliseconds since the
+	 *           epoch
+	 * @return the entries, oldest first
+	 * @throws IOException
+	 *            if a segment cannot be read, or is not a journal segment
+	 */
+	public ImmutableList<JournalEntry> read(String experimentName, long fromMillis, long toMillis)
+			throws IOException {
+		ImmutableList.Builder<JournalEntry> entries = ImmutableList.builder();
+		for (Path segment : JournalFormat.segments(directory)) {
+			read(segment, experimentName, fromMillis, toMillis, entries);
+		}
+		return entries.build();
+	}
+
+	/** Read all entries. */
+	public ImmutableList<JournalEntry> readAll() throws IOException {
+		return read(null, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	private static void read(Path segment, String experimentName, long fromMillis, long toMillis,
+			ImmutableList.Builder<JournalEntry> entries) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.remaining() < JournalFormat.HEADER_BYTES || buffer.getInt() != JournalFormat.MAGIC
+				|| buffer.getShort() != JournalFormat.VERSION) {
+			throw new IOException(segment + " is not a journal segment");
+		}
+		buffer.getShort();
+
+		while (buffer.remaining() >= Integer.BYTES) {
+			int length = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				return;
+			}
+			int end = buffer.position() + length;
+
+			long timestampMillis = buffer.getLong();
+			String name = JournalFormat.getString(buffer);
+			if (timestampMillis >= fromMillis && timestampMillis < toMillis
+					&& (experimentName == null || experimentName.equals(name))) {
+				entries.add(decode(buffer, timestampMillis, name));
+			}
+			buffer.position(end);
+		}
+	}
+
+	private static JournalEntry decode(ByteBuffer buffer, long timestampMillis, String experimentName) {
+		ImmutableMap.Builder<String, String> contexts = ImmutableMap.builder();
+		for (long i = JournalFormat.getVarLong(buffer); i > 0; i--) {
+			contexts.put(JournalFormat.getString(buffer), JournalFormat.getString(buffer));
+		}
+
+		ImmutableList.Builder<JournalObservation> observations = ImmutableList.builder();
+		for (long i = JournalFormat.getVarLong(buffer); i > 0; i--) {
+			String name = JournalFormat.getString(buffer);
+			int flags = buffer.get();
+			long durationNanos = JournalFormat.getVarLong(buffer);
+			String value = null;
+			String exceptionClass = null;
+			String exceptionMessage = null;
+			if ((flags & JournalFormat.THROWN) != 0) {
+				exceptionClass = JournalFormat.getString(buffer);
+				exceptionMessage = JournalFormat.getString(buffer);
+			} else {
+				value = JournalFormat.getString(buffer);
+			}
+			String difference = (flags & JournalFormat.DIFFERENCE) != 0 ? JournalFormat.getString(buffer) : null;
+
+			observations.add(new JournalObservation(name, (flags & JournalFormat.CONTROL) != 0,
+					(flags & JournalFormat.MISMATCHED) != 0, (flags & JournalFormat.TIMED_OUT) != 0, durationNanos,
+					value, exceptionClass, exceptionMessage, difference));
+		}
+		return new JournalEntry(timestampMillis, experimentName, contexts.build(), observations.build());
+	}
+
+	/**
+	 * Print the entries of a journal.
+	 * 
+	 * @param args
+	 *           the directory of the journal, optionally followed by
+	 *           <code>--experiment=NAME</code>, <code>--from=INSTANT</code> and
+	 *           <code>--to=INSTANT</code>
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: JournalReader <directory> [--experiment=NAME] [--from=INSTANT] [--to=INSTANT]");
+			System.exit(2);
+		}
+
+		String experimentName = null;
+		long fromMillis = Long.MIN_VALUE;
+		long toMillis = Long.MAX_VALUE;
+		for (int i = 1; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.startsWith("--experiment=")) {
+				experimentName = arg.substring("--experiment=".length());
+			} else if (arg.startsWith("--from=")) {
+				fromMillis = Instant.parse(arg.substring("--from=".length())).toEpochMilli();
+			} else if (arg.startsWith("--to=")) {
+				toMillis = Instant.parse(arg.substring("--to=".length())).toEpochMilli();
+			} else {
+				System.err.println("Unknown argument: " + arg);
+				System.exit(2);
+			}
+		}
+
+		for (JournalEntry entry : new JournalReader(Paths.get(args[0])).read(experimentName, fromMillis, toMillis)) {
+			print(entry, System.out);
+		}
+	}
+
+	private static void print(JournalEntry entry, PrintStream out) {
+		out.println(Instant.ofEpochMilli(entry.getTimestampMillis()) + " " + entry.getExperimentName() + " "
+				+ entry.getContexts());
+		for (JournalObservation o : entry.getObservations()) {
+			StringBuilder sb = new StringBuilder("  ");
+			sb.append(o.isControl() ? "control " : o.isMismatched() ? "mismatch " : "match ");
+			sb.append(o.getName()).append(' ').append(TimeUnit.NANOSECONDS.toMillis(o.getDurationNanos())).append("ms ");
+			if (o.isThrown()) {
+				sb.append("threw ").append(o.getExceptionClass()).append(" (").append(o.getExceptionMessage()).append(')');
+			} else {
+				sb.append("returned '").append(o.getValue()).append('\'');
+			}
+			if (o.isTimedOut()) {
+				sb.append(" timed out");
+			}
+			if (o.getDifference() != null) {
+				sb.append("; first difference at ").append(o.getDifference());
+			}
+			out.println(sb);
+		}
+	}
+}
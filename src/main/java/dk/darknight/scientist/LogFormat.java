@@ -0,0 +1,22 @@
+package dk.darknight.scientist;
+
+/** Decides how a {@link LogPublisher} formats its lines. */
+public enum LogFormat {
+	/**
+	 * Human readable lines, e.g.
+	 * <code>orders (5f3a9c1e-2a): control: 12ms, candidate: 9ms</code>.
+	 */
+	TEXT,
+	/**
+	 * Space separated <code>key=value</code> pairs with quoted strings, e.g.
+	 * <code>experiment="orders" run="5f3a9c1e-2a" event="run" duration_ms.control=12 duration_ms.candidate=9</code>.
+	 * Characters other than letters, digits, <code>_</code>, <code>-</code> and
+	 * <code>.</code> in behavior names are replaced by <code>_</code> in keys.
+	 */
+	KEY_VALUE,
+	/**
+	 * A JSON object per line, e.g.
+	 * <code>{"experiment":"orders","run":"5f3a9c1e-2a","event":"run","duration_ms":{"control":12,"candidate":9}}</code>.
+	 */
+	JSON
+}
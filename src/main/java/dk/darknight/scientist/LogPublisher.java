@@ -1,74 +1,309 @@
 package dk.darknight.scientist;
 
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 
 import lombok.NonNull;
 
+/**
+ * Publishes results to a logger at INFO level.
+ * <p>
+ * Each run is logged as a line with the duration of each behavior, followed by
+ * a line per mismatched candidate, all tagged with an ID of the run. Nothing is
+ * formatted, and the candidates are not even compared, unless INFO is enabled
+ * or mismatches are deduplicated. Run IDs are a per thread counter after a
+ * random per thread prefix, and lines are built in a per thread buffer, so
+ * publishing neither contends nor allocates more than it has to.
+ * </p>
+ */
 public class LogPublisher implements IResultPublisher {
-	public static final LogPublisher DEFAULT = new LogPublisher(); 
+	public static final LogPublisher DEFAULT = new LogPublisher();
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int MAXIMUM_RETAINED_CAPACITY = 8192;
+
+	private static final ThreadLocal<LineBuffer> BUFFERS = new ThreadLocal<LineBuffer>() {
+		@Override
+		protected LineBuffer initialValue() {
+			return new LineBuffer();
+		}
+	};
+
 	private final Logger log;
-	
+	private final MismatchDeduplicator deduplicator;
+	private final LogFormat format;
+
 	private LogPublisher() {
-		log = LoggerFactory.getLogger(LogPublisher.class);
+		this(LoggerFactory.getLogger(LogPublisher.class));
 	}
-		
+
 	public LogPublisher(@NonNull Logger log) {
+		this(log, null, LogFormat.TEXT);
+	}
+
+	/**
+	 * Create a publisher that logs a mismatch the first time it is seen, and
+	 * again each time the number of times it was seen reaches a power of ten.
+	 * 
+	 * @param log
+	 *           the logger to log to
+	 * @param deduplicator
+	 *           the deduplicator counting identical mismatches
+	 */
+	public LogPublisher(@NonNull Logger log, @NonNull MismatchDeduplicator deduplicator) {
+		this(log, deduplicator, LogFormat.TEXT);
+	}
+
+	/**
+	 * Create a publisher.
+	 * 
+	 * @param log
+	 *           the logger to log to
+	 * @param deduplicator
+	 *           the deduplicator counting identical mismatches, or
+	 *           <code>null</code> to log every mismatch
+	 * @param format
+	 *           the format of the lines
+	 */
+	public LogPublisher(@NonNull Logger log, MismatchDeduplicator deduplicator, @NonNull LogFormat format) {
 		this.log = log;
+		this.deduplicator = deduplicator;
+		this.format = format;
 	}
 
 	@Override
 	public <T, TClean> void publish(Result<T, TClean> result) {
-		final ImmutableList<Observation<T, TClean>> mismatchedObservations = result.getMismatchedObservations();
+		final boolean enabled = log.isInfoEnabled();
+		if (!enabled && deduplicator == null) {
+			return;
+		}
+
+		final LineBuffer buffer = BUFFERS.get();
+		final String runId = enabled ? buffer.nextRunId() : null;
+		if (enabled) {
+			logRun(buffer, runId, result);
+		}
+
+		final Observation<T, TClean> control = result.getControl();
+		for (Observation<T, TClean> observation : result.getMismatchedObservations()) {
+			if (deduplicator == null) {
+				logMismatch(buffer, runId, result.getExperimentName(), observation.getName(),
+						MismatchDeduplicator.describe(control, observation), null, 0);
+				continue;
+			}
+
+			MismatchRecord record = deduplicator.find(result.getExperimentName(), control, observation);
+			long count = record.seen(System.currentTimeMillis());
+			if (enabled && isPowerOfTen(count)) {
+				logMismatch(buffer, runId, result.getExperimentName(), observation.getName(), record.getExample(),
+						record, count);
+			}
+		}
+	}
+
+	private <T, TClean> void logRun(LineBuffer buffer, String runId, Result<T, TClean> result) {
 		final ImmutableList<Observation<T, TClean>> observations = result.getObservations();
-		final String[] durations = new String[observations.size()];
-		final String experimentId = result.getExperimentName() + " (" + UUID.randomUUID().toString() + ")";
-		
-		for (int i = 0; i < observations.size(); i++) {
-			Observation<T, TClean> o = observations.get(i);
-			durations[i] = o.getName() + ": " + o.getDuration() + "ms";
+		final StringBuilder sb = buffer.line();
+
+		if (format == LogFormat.TEXT) {
+			for (int i = 0; i < observations.size(); i++) {
+				Observation<T, TClean> o = observations.get(i);
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(o.getName()).append(": ").append(o.getDuration()).append("ms");
+			}
+			log.info("{} ({}): {}", result.getExperimentName(), runId, sb.toString());
+			return;
 		}
 
-		log.info(experimentId + ": " + Joiner.on(", ").join(durations));
+		begin(sb, result.getExperimentName(), runId, "run");
+		if (format == LogFormat.JSON) {
+			sb.append(",\"duration_ms\":{");
+			for (int i = 0; i < observations.size(); i++) {
+				Observation<T, TClean> o = observations.get(i);
+				if (i > 0) {
+					sb.append(',');
+				}
+				appendJson(sb, o.getName());
+				sb.append(':').append(o.getDuration());
+			}
+			sb.append('}');
+		} else {
+			for (Observation<T, TClean> o : observations) {
+				sb.append(" duration_ms.");
+				appendKey(sb, o.getName());
+				sb.append('=').append(o.getDuration());
+			}
+		}
+		end(sb);
+		log.info(sb.toString());
+	}
 
-		if (!mismatchedObservations.isEmpty()) {
-			final Observation<T, TClean> control = result.getControl();
-			String expectedValue;
-			if (control.isThrown()) {
-				expectedValue = "thrown exception " + exceptionToString(control.getException());
+	private void logMismatch(LineBuffer buffer, String runId, String experimentName, String candidateName,
+			String description, MismatchRecord record, long count) {
+		if (format == LogFormat.TEXT) {
+			if (record == null) {
+				log.info("{} ({}) mismatch: {} {}", experimentName, runId, candidateName, description);
 			} else {
-				expectedValue = " '" + control.getCleanedValue() + "'";
+				log.info("{} ({}) mismatch {} seen {} times: {} {}", experimentName, runId,
+						Long.toHexString(record.getFingerprint()), count, candidateName, description);
+			}
+			return;
+		}
+
+		final StringBuilder sb = buffer.line();
+		begin(sb, experimentName, runId, "mismatch");
+		field(sb, "candidate", candidateName);
+		field(sb, "description", description);
+		if (record != null) {
+			field(sb, "fingerprint", Long.toHexString(record.getFingerprint()));
+			separator(sb);
+			appendKey(sb, "count");
+			sb.append(format == LogFormat.JSON ? ':' : '=').append(count);
+		}
+		end(sb);
+		log.info(sb.toString());
+	}
+
+	/** Start a structured line with the fields every line has. */
+	private void begin(StringBuilder sb, String experimentName, String runId, String event) {
+		if (format == LogFormat.JSON) {
+			sb.append('{');
+		}
+		field(sb, "experiment", experimentName);
+		field(sb, "run", runId);
+		field(sb, "event", event);
+	}
+
+	private void end(StringBuilder sb) {
+		if (format == LogFormat.JSON) {
+			sb.append('}');
+		}
+	}
+
+	private void field(StringBuilder sb, String key, String value) {
+		separator(sb);
+		if (format == LogFormat.JSON) {
+			appendJson(sb, key);
+			sb.append(':');
+			appendJson(sb, value);
+		} else {
+			sb.append(key).append('=');
+			appendQuoted(sb, value);
+		}
+	}
+
+	private void separator(StringBuilder sb) {
+		char last = sb.length() == 0 ? '{' : sb.charAt(sb.length() - 1);
+		if (last != '{') {
+			sb.append(format == LogFormat.JSON ? ',' : ' ');
+		}
+	}
+
+	private void appendKey(StringBuilder sb, String key) {
+		if (format == LogFormat.JSON) {
+			appendJson(sb, key);
+			return;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			boolean plain = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'
+					|| c == '-' || c == '.';
+			sb.append(plain ? c : '_');
+		}
+	}
+
+	/** Append a double quoted value, escaping quotes, backslashes and line breaks, or <code>null</code>. */
+	private static void appendQuoted(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+			case '\\':
+				sb.append('\\').append(c);
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			default:
+				sb.append(c);
 			}
+		}
+		sb.append('"');
+	}
 
-			for (Observation<T, TClean> observation : mismatchedObservations) {
-				StringBuilder sb = new StringBuilder();
-				sb.append(experimentId);
-				sb.append(" mismatch: ");
-				sb.append(observation.getName());
-				sb.append(" ");
-				if (observation.isThrown()) {
-					Exception e = observation.getException();
-					sb.append("threw ");
-					sb.append(exceptionToString(e));
+	/** Append a JSON string, or <code>null</code>. */
+	private static void appendJson(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+			case '\\':
+				sb.append('\\').append(c);
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
 				} else {
-					sb.append("returned '");
-					sb.append(observation.getCleanedValue());
-					sb.append("'");
+					sb.append(c);
 				}
-				sb.append("; expected " + expectedValue);
-				
-				log.info(sb.toString());
 			}
 		}
+		sb.append('"');
 	}
 
-	private String exceptionToString(Exception e) {
-		return e.getClass().getSimpleName() + " (" + e.getMessage() + ")";
+	private static boolean isPowerOfTen(long n) {
+		while (n >= 10 && n % 10 == 0) {
+			n /= 10;
+		}
+		return n == 1;
 	}
 
+	/** The line buffer and the run IDs of a thread. */
+	private static final class LineBuffer {
+		private final String runIdPrefix = Integer.toHexString(ThreadLocalRandom.current().nextInt()) + "-";
+		private long runs;
+		private StringBuilder line = new StringBuilder(INITIAL_CAPACITY);
+
+		String nextRunId() {
+			return runIdPrefix + Long.toHexString(++runs);
+		}
+
+		/** Gets the empty line buffer, dropping it if an earlier line made it grow too large. */
+		StringBuilder line() {
+			if (line.capacity() > MAXIMUM_RETAINED_CAPACITY) {
+				line = new StringBuilder(INITIAL_CAPACITY);
+			} else {
+				line.setLength(0);
+			}
+			return line;
+		}
+	}
 }
@@ -0,0 +1,228 @@
+package dk.darknight.scientist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Collapses identical mismatches into counts.
+ * <p>
+ * A mismatch is identified by a fingerprint of the experiment, the candidate
+ * and how the candidate differs: the path of the first {@link Difference} and
+ * the elements of the control and the candidate at that path when the
+ * comparator found one, or else the outcomes of the control and the candidate,
+ * which are the cleaned value or the type and message of the thrown exception.
+ * Values are hashed by their class and hash code, arrays by their deep hash
+ * code, and values whose class keeps the identity based
+ * {@link Object#hashCode()} by their string form, or by their class alone when
+ * that is identity based too. Only the most recently seen distinct mismatches
+ * are kept, each with a description of its first occurrence, so memory use is
+ * bounded.
+ * </p>
+ */
+public class MismatchDeduplicator {
+	private static final int DEFAULT_CAPACITY = 1000;
+
+	/** Whether a class overrides {@link Object#hashCode()}, or else {@link Object#toString()}. */
+	private static final ClassValue<ValueIdentity> IDENTITIES = new ClassValue<ValueIdentity>() {
+		@Override
+		protected ValueIdentity computeValue(Class<?> type) {
+			try {
+				if (type.getMethod("hashCode").getDeclaringClass() != Object.class) {
+					return ValueIdentity.HASH_CODE;
+				}
+				if (type.getMethod("toString").getDeclaringClass() != Object.class) {
+					return ValueIdentity.STRING;
+				}
+			} catch (NoSuchMethodException e) {
+				throw new AssertionError(e);
+			}
+			return ValueIdentity.CLASS;
+		}
+	};
+
+	private enum ValueIdentity {
+		HASH_CODE, STRING, CLASS
+	}
+
+	private final Cache<Long, MismatchRecord> records;
+	private final AtomicLong evicted = new AtomicLong();
+
+	/** Create a deduplicator keeping up to 1000 distinct mismatches. */
+	public MismatchDeduplicator() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a deduplicator.
+	 * 
+	 * @param capacity
+	 *           the number of distinct mismatches kept
+	 */
+	public MismatchDeduplicator(int capacity) {
+		Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+		records = CacheBuilder.newBuilder().maximumSize(capacity)
+				.removalListener(new RemovalListener<Long, MismatchRecord>() {
+					@Override
+					public void onRemoval(RemovalNotification<Long, MismatchRecord> notification) {
+						if (notification.wasEvicted()) {
+							evicted.incrementAndGet();
+						}
+					}
+				}).build();
+	}
+
+	/** Gets the number of distinct mismatches dropped to stay within the capacity. */
+	public long getEvictedCount() {
+		return evicted.get();
+	}
+
+	/** Gets the distinct mismatches currently kept. */
+	public List<MismatchRecord> getMismatches() {
+		return new ArrayList<>(records.asMap().values());
+	}
+
+	/**
+	 * Count a mismatch.
+	 * 
+	 * @param experimentName
+	 *           the name of the experiment
+	 * @param control
+	 *           the control observation
+	 * @param candidate
+	 *           the mismatched candidate observation
+	 * @return the record of the mismatch, whose count includes this occurrence
+	 */
+	<T, TClean> MismatchRecord record(String experimentName, Observation<T, TClean> control,
+			Observation<T, TClean> candidate) {
+		MismatchRecord record = find(experimentName, control, candidate);
+		record.seen(System.currentTimeMillis());
+		return record;
+	}
+
+	/**
+	 * Gets the record of a mismatch without counting it, creating the record
+	 * when the mismatch was not seen before. Callers count the occurrence with
+	 * {@link MismatchRecord#seen(long)}, whose return value is the count of
+	 * this occurrence even when other threads count the same mismatch.
+	 * 
+	 * @param experimentName
+	 *           the name of the experiment
+	 * @param control
+	 *           the control observation
+	 * @param candidate
+	 *           the mismatched candidate observation
+	 * @return the record of the mismatch
+	 */
+	<T, TClean> MismatchRecord find(String experimentName, Observation<T, TClean> control,
+			Observation<T, TClean> candidate) {
+		long fingerprint = fingerprint(experimentName, control, candidate);
+		MismatchRecord record = records.getIfPresent(fingerprint);
+		if (record == null) {
+			MismatchRecord created = new MismatchRecord(fingerprint, experimentName, candidate.getName(),
+					describe(control, candidate), System.currentTimeMillis());
+			record = records.asMap().putIfAbsent(fingerprint, created);
+			if (record == null) {
+				record = created;
+			}
+		}
+		return record;
+	}
+
+	/** Compute the fingerprint of a mismatch. */
+	static <T, TClean> long fingerprint(String experimentName, Observation<T, TClean> control,
+			Observation<T, TClean> candidate) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putUnencodedChars(experimentName);
+		hasher.putUnencodedChars(candidate.getName());
+		Difference difference = candidate.getDifference();
+		if (difference != null) {
+			// The reason is left out, as it may count differing elements
+			hasher.putByte((byte) 2);
+			hasher.putUnencodedChars(difference.getPath());
+			putValue(hasher, difference.getControl());
+			putValue(hasher, difference.getCandidate());
+		} else {
+			putOutcome(hasher, control);
+			putOutcome(hasher, candidate);
+		}
+		return hasher.hash().asLong();
+	}
+
+	private static <T, TClean> void putOutcome(Hasher hasher, Observation<T, TClean> observation) {
+		if (observation.isThrown()) {
+			Exception e = observation.getException();
+			hasher.putByte((byte) 1);
+			hasher.putUnencodedChars(Observation.exceptionClassName(e));
+			hasher.putUnencodedChars(String.valueOf(e.getMessage()));
+		} else {
+			hasher.putByte((byte) 0);
+			putValue(hasher, observation.getCleanedValue());
+		}
+	}
+
+	private static void putValue(Hasher hasher, Object value) {
+		if (value == null) {
+			hasher.putByte((byte) 0);
+			return;
+		}
+		Class<?> type = value.getClass();
+		hasher.putByte((byte) 1);
+		hasher.putUnencodedChars(type.getName());
+		if (type.isArray()) {
+			hasher.putInt(Arrays.deepHashCode(new Object[] { value }));
+			return;
+		}
+		switch (IDENTITIES.get(type)) {
+		case HASH_CODE:
+			hasher.putInt(value.hashCode());
+			break;
+		case STRING:
+			hasher.putUnencodedChars(value.toString());
+			break;
+		default:
+			// Instances of the class cannot be told apart
+			break;
+		}
+	}
+
+	/**
+	 * Describe a mismatch.
+	 * 
+	 * @return e.g. {@code returned '1'; expected '2'}
+	 */
+	static <T, TClean> String describe(Observation<T, TClean> control, Observation<T, TClean> candidate) {
+		StringBuilder sb = new StringBuilder();
+		if (candidate.isThrown()) {
+			sb.append("threw ");
+			appendException(sb, candidate.getException());
+		} else {
+			sb.append("returned '").append(candidate.getCleanedValue()).append("'");
+		}
+		sb.append("; expected ");
+		if (control.isThrown()) {
+			sb.append("thrown exception ");
+			appendException(sb, control.getException());
+		} else {
+			sb.append(" '").append(control.getCleanedValue()).append("'");
+		}
+		if (candidate.getDifference() != null) {
+			sb.append("; first difference at ").append(candidate.getDifference().getSummary());
+		}
+		return sb.toString();
+	}
+
+	private static void appendException(StringBuilder sb, Exception e) {
+		String className = Observation.exceptionClassName(e);
+		sb.append(className.substring(className.lastIndexOf('.') + 1)).append(" (").append(e.getMessage()).append(")");
+	}
+}
@@ -0,0 +1,57 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/** A distinct mismatch tracked by a {@link MismatchDeduplicator}. */
+@Getter
+public class MismatchRecord {
+	/** Gets the fingerprint identifying the mismatch. */
+	private final long fingerprint;
+
+	/** Gets the name of the experiment. */
+	private final String experimentName;
+
+	/** Gets the name of the mismatched candidate. */
+	private final String candidateName;
+
+	/** Gets a description of the first occurrence of the mismatch. */
+	private final String example;
+
+	/** Gets the time the mismatch was first seen, in milliseconds since the epoch. */
+	private final long firstSeenMillis;
+
+	/** Gets the time the mismatch was last seen, in milliseconds since the epoch. */
+	private volatile long lastSeenMillis;
+
+	@Getter(AccessLevel.NONE)
+	private final AtomicLong count = new AtomicLong();
+
+	MismatchRecord(long fingerprint, String experimentName, String candidateName, String example, long nowMillis) {
+		this.fingerprint = fingerprint;
+		this.experimentName = experimentName;
+		this.candidateName = candidateName;
+		this.example = example;
+		this.firstSeenMillis = nowMillis;
+		this.lastSeenMillis = nowMillis;
+	}
+
+	/** Gets the number of times the mismatch was seen. */
+	public long getCount() {
+		return count.get();
+	}
+
+	/** Count an occurrence, returning the new count. */
+	long seen(long nowMillis) {
+		lastSeenMillis = nowMillis;
+		return count.incrementAndGet();
+	}
+
+	@Override
+	public String toString() {
+		return experimentName + " mismatch " + Long.toHexString(fingerprint) + " seen " + getCount() + " times: "
+				+ candidateName + " " + example;
+	}
+}
@@ -1,17 +1,27 @@
 package dk.darknight.scientist;
 
 import java.util.Comparator;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Supplier;
 
 import dk.darknight.scientist.functions.DoubleAction;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.ToString;
 import lombok.Value;
 import lombok.experimental.NonFinal;
 
@@ -21,21 +31,16 @@ class Observation<T, TClean> {
 	/**
 	 * Create a lazy observation.
 	 * 
-	 * @param xs an executor service used to execute the observation. The observation is submitted as a {@link Callable}.
 	 * @param name the name of the candidate
 	 * @param block the actual experiment
+	 * @param input the input passed to the block
 	 * @param thrown 
 	 * @param cleaner
-	 * @return a future observation
+	 * @return a task that evaluates the observation when run by an executor
 	 */
-	public static <T, TClean> Future<Observation<T, TClean>> of(ExecutorService xs, final String name,
-			final Supplier<T> block, final DoubleAction<Operation, Exception> thrown, final Function<T, TClean> cleaner) {
-		return xs.submit(new Callable<Observation<T, TClean>>() {
-			@Override
-			public Observation<T, TClean> call() throws Exception {
-				return of(name, block, thrown, cleaner);
-			}
-		});
+	public static <I, T, TClean> ObservationTask<T, TClean> task(String name, Function<I, T> block, I input,
+			DoubleAction<Operation, Exception> thrown, Function<T, TClean> cleaner, boolean measureResourceUsage) {
+		return new ObservationTask<>(name, block, input, thrown, cleaner, measureResourceUsage);
 	}
 
 	/**
@@ -49,15 +54,128 @@ class Observation<T, TClean> {
 	 */
 	public static <T, TClean> Observation<T, TClean> of(String name, Supplier<T> block,
 			DoubleAction<Operation, Exception> thrown, Function<T, TClean> cleaner) {
+		return of(name, Functions.<Object, T>forSupplier(block), null, thrown, cleaner, false, 0);
+	}
+
+	/**
+	 * Create and evaluate an observation.
+	 * 
+	 * @param name
+	 * @param block
+	 * @param input
+	 *           the input passed to the block
+	 * @param thrown
+	 * @param cleaner
+	 * @param measureResourceUsage
+	 *           whether to measure the CPU time and bytes allocated by the block
+	 * @param submittedNanos
+	 *           the {@link System#nanoTime()} the block was handed to an
+	 *           executor, or 0 if it runs on the calling thread
+	 * @return
+	 */
+	public static <I, T, TClean> Observation<T, TClean> of(String name, Function<I, T> block, I input,
+			DoubleAction<Operation, Exception> thrown, Function<T, TClean> cleaner, boolean measureResourceUsage,
+			long submittedNanos) {
+		Observation<T, TClean> observation = new Observation<T, TClean>(name, thrown, cleaner);
+		observation.run(block, input, measureResourceUsage, submittedNanos);
+		return observation;
+	}
+
+	/**
+	 * Create an asynchronous observation. The block is called on the calling
+	 * thread, and the observation completes when the block's future completes.
+	 * 
+	 * @param name the name of the candidate
+	 * @param block the actual experiment, returning a future result
+	 * @param thrown
+	 * @param cleaner
+	 * @param timeoutNanos the number of nanoseconds the block is given to complete, or 0 for no timeout.
+	 *           A block that times out is cancelled.
+	 * @return a future observation, which never completes exceptionally
+	 */
+	public static <T, TClean> CompletableFuture<Observation<T, TClean>> ofAsync(final String name,
+			Supplier<CompletableFuture<T>> block, DoubleAction<Operation, Exception> thrown,
+			Function<T, TClean> cleaner, long timeoutNanos) {
+		final Observation<T, TClean> observation = new Observation<T, TClean>(name, thrown, cleaner);
+		final long start = System.nanoTime();
+		final CompletableFuture<T> future;
+		try {
+			future = block.get();
+		} catch (Exception ex) {
+			observation.complete(start, null, ex);
+			return CompletableFuture.completedFuture(observation);
+		}
+
+		// Cancelled when the future completes, so the timer does not hold the observation
+		final AtomicReference<ScheduledFuture<?>> timeout = new AtomicReference<>();
+		final AtomicBoolean completed = new AtomicBoolean();
+		final CompletableFuture<Observation<T, TClean>> result = future
+				.handle(new BiFunction<T, Throwable, Observation<T, TClean>>() {
+					@Override
+					public Observation<T, TClean> apply(T value, Throwable ex) {
+						completed.set(true);
+						ScheduledFuture<?> t = timeout.get();
+						if (t != null) {
+							t.cancel(false);
+						}
+						observation.complete(start, value, ex);
+						return observation;
+					}
+				});
+		if (timeoutNanos > 0 && !result.isDone()) {
+			ScheduledFuture<?> t = Timeouts.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (result.complete(Observation.<T, TClean>timedOut(name))) {
+						future.cancel(true);
+					}
+				}
+			}, timeoutNanos);
+			timeout.set(t);
+			if (completed.get()) {
+				t.cancel(false);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Create an observation of a recorded run, see {@link ExperimentReplayer}.
+	 * 
+	 * @param name
+	 * @param value
+	 *           the recorded value, or <code>null</code> if the behavior threw
+	 * @param exception
+	 *           the recorded exception, or <code>null</code>
+	 * @param durationNanos
+	 *           the recorded duration
+	 * @param thrown
+	 * @param cleaner
+	 * @return
+	 */
+	static <T, TClean> Observation<T, TClean> recorded(String name, T value, Exception exception, long durationNanos,
+			DoubleAction<Operation, Exception> thrown, Function<T, TClean> cleaner) {
 		Observation<T, TClean> observation = new Observation<T, TClean>(name, thrown, cleaner);
-		observation.run(block);
+		observation.value = value;
+		observation.exception = exception;
+		observation.durationNanos = durationNanos;
 		return observation;
 	}
 
+	/**
+	 * Gets the name of the class of an exception, which for a
+	 * {@link RecordedException} is the class of the original exception.
+	 */
+	static String exceptionClassName(Exception exception) {
+		return exception instanceof RecordedException ? ((RecordedException) exception).getExceptionClassName()
+				: exception.getClass().getName();
+	}
+
 	/** Create a dummy observation used for asynchronous publishin to indicate a timed out observation. */
 	public static <T, TClean> Observation<T, TClean> timedOut(String name) {
 		Observation<T, TClean> observation = new Observation<T, TClean>(name, null, null);
 		observation.exception = new TimeoutException("Experiment failed to complete in time");
+		observation.timedOut = true;
 		return observation;
 	}
 
@@ -72,12 +190,49 @@ class Observation<T, TClean> {
 	@NonFinal
 	private Exception exception;
 
+	/** The wall clock time the behavior took to execute, in nanoseconds. */
+	@NonFinal
+	private long durationNanos;
+
+	/** The time the behavior waited for an executor before it started, in nanoseconds. */
+	@NonFinal
+	private long queueWaitNanos;
+
+	/** The CPU time used by the behavior in nanoseconds, or -1 if it was not measured. */
+	@NonFinal
+	private long cpuTimeNanos = ThreadResources.UNAVAILABLE;
+
+	/** The number of bytes allocated by the behavior, or -1 if it was not measured. */
 	@NonFinal
-	private long duration;
+	private long allocatedBytes = ThreadResources.UNAVAILABLE;
 
 	@NonFinal
 	private T value;
 
+	/** Whether the behavior was cancelled because it did not complete in time. */
+	@NonFinal
+	private boolean timedOut;
+
+	/**
+	 * The first difference from the control, if the experiment compares with an
+	 * {@link IDiffComparator} and the values differ, or <code>null</code>.
+	 */
+	@NonFinal
+	@EqualsAndHashCode.Exclude
+	private Difference difference;
+
+	@NonFinal
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private boolean cleaned;
+
+	@NonFinal
+	@Getter(AccessLevel.NONE)
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private TClean cleanedValue;
+
 	/**
 	 * Determine if two observations are equivalent (not necessarily identical).
 	 * 
@@ -85,7 +240,9 @@ class Observation<T, TClean> {
 	 *           another observation to compare with this one
 	 * @param comparator
 	 *           the comparator to use. A zero return value means the
-	 *           observations are equivalent
+	 *           observations are equivalent. If it is an
+	 *           {@link IDiffComparator}, the difference is kept on this
+	 *           observation
 	 * @return <code>true</code>, if the observations are equivalent
 	 */
 	public boolean equivalentTo(Observation<T, TClean> other, Comparator<T> comparator) {
@@ -94,11 +251,14 @@ class Observation<T, TClean> {
 			boolean bothRaised = other.isThrown() && isThrown();
 			boolean neitherRaised = !other.isThrown() && !isThrown();
 
-			if (neitherRaised) {
+			if (neitherRaised && comparator instanceof IDiffComparator) {
+				difference = ((IDiffComparator<T>) comparator).diff(other.value, value);
+				valuesAreEqual = difference == null;
+			} else if (neitherRaised) {
 				valuesAreEqual = comparator.compare(other.value, value) == 0;
 			}
 
-			boolean exceptionsAreEquivalent = bothRaised && other.exception.getClass().equals(exception.getClass())
+			boolean exceptionsAreEquivalent = bothRaised && exceptionClassName(other.exception).equals(exceptionClassName(exception))
 					&& MoreObjects.firstNonNull(other.exception.getMessage(), "")
 							.equals(MoreObjects.firstNonNull(exception.getMessage(), ""));
 
@@ -114,19 +274,68 @@ class Observation<T, TClean> {
 		return exception != null;
 	}
 
+	/** Gets the wall clock time the behavior took to execute, in milliseconds. */
+	public long getDuration() {
+		return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+	}
+
 	/** Execute a timed experiment and populate the observation. */
-	private void run(Supplier<T> block) {
-		long start = System.currentTimeMillis();
+	private <I> void run(Function<I, T> block, I input, boolean measureResourceUsage, long submittedNanos) {
+		long startCpu = measureResourceUsage ? ThreadResources.cpuTimeNanos() : ThreadResources.UNAVAILABLE;
+		long startAllocated = measureResourceUsage ? ThreadResources.allocatedBytes() : ThreadResources.UNAVAILABLE;
+		long start = System.nanoTime();
+		if (submittedNanos != 0) {
+			queueWaitNanos = Math.max(0, start - submittedNanos);
+		}
+
 		try {
-			value = block.get();
+			value = block.apply(input);
 		} catch (Exception ex) {
 			exception = ex;
 		}
 
-		duration = System.currentTimeMillis() - start;
+		durationNanos = System.nanoTime() - start;
+		if (startCpu != ThreadResources.UNAVAILABLE) {
+			cpuTimeNanos = ThreadResources.cpuTimeNanos() - startCpu;
+		}
+		if (startAllocated != ThreadResources.UNAVAILABLE) {
+			allocatedBytes = ThreadResources.allocatedBytes() - startAllocated;
+		}
 	}
 		
-	public TClean getCleanedValue() {
-		return cleaner.apply(value);
+	/** Populate the observation from the outcome of an asynchronous experiment. */
+	private void complete(long start, T value, Throwable ex) {
+		if (ex instanceof CompletionException && ex.getCause() != null) {
+			ex = ex.getCause();
+		}
+
+		if (ex == null) {
+			this.value = value;
+		} else {
+			exception = ex instanceof Exception ? (Exception) ex : new ExecutionException(ex);
+		}
+
+		durationNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Gets the value transformed by the cleaner. The value is cleaned the first
+	 * time it is asked for, on the calling thread, and the cleaned value is
+	 * kept, so the cleaner runs at most once per observation.
+	 * 
+	 * @return the cleaned value, or <code>null</code> if an exception was
+	 *         observed or the cleaner failed. Cleaner failures are reported as
+	 *         {@link Operation#CLEAN}.
+	 */
+	public synchronized TClean getCleanedValue() {
+		if (!cleaned && !isThrown()) {
+			cleaned = true;
+			try {
+				cleanedValue = cleaner.apply(value);
+			} catch (Exception e) {
+				experimentThrown.apply(Operation.CLEAN, e);
+			}
+		}
+		return cleanedValue;
 	}
 }
\ No newline at end of file
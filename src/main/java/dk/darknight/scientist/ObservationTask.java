@@ -0,0 +1,141 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+
+import com.google.common.base.Function;
+
+import dk.darknight.scientist.functions.DoubleAction;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A task evaluating an observation on an executor, which can be cancelled when
+ * the behavior's timeout expires.
+ * <p>
+ * Cancelling the task interrupts the thread running the behavior, and makes
+ * the task complete right away even if the behavior ignores the interrupt.
+ * </p>
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+final class ObservationTask<T, TClean> extends FutureTask<Observation<T, TClean>> {
+	/** The name of the behavior. */
+	@Getter
+	private final String name;
+
+	/** Whether the task was cancelled because its timeout expired. */
+	@Getter
+	private volatile boolean timedOut;
+
+	private volatile ScheduledFuture<?> timeout;
+
+	/** Run once the task is done, guarded by the task. */
+	private Runnable listener;
+	private boolean completed;
+
+	private final Evaluation<?, T, TClean> evaluation;
+
+	<I> ObservationTask(String name, Function<I, T> block, I input, DoubleAction<Operation, Exception> thrown,
+			Function<T, TClean> cleaner, boolean measureResourceUsage) {
+		this(name, new Evaluation<>(name, block, input, thrown, cleaner, measureResourceUsage));
+	}
+
+	private ObservationTask(String name, Evaluation<?, T, TClean> evaluation) {
+		super(evaluation);
+		this.name = name;
+		this.evaluation = evaluation;
+	}
+
+	/**
+	 * Record that the task is being handed to an executor, so the time it waits
+	 * for a worker is included in the observation.
+	 */
+	void submitted() {
+		evaluation.submittedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Cancel the task if it has not completed within a timeout.
+	 * 
+	 * @param timeoutNanos
+	 *           the timeout in nanoseconds, counted from now
+	 */
+	void cancelAfter(long timeoutNanos) {
+		timeout = Timeouts.schedule(new Runnable() {
+			@Override
+			public void run() {
+				timeOut();
+			}
+		}, timeoutNanos);
+
+		if (isDone()) {
+			timeout.cancel(false);
+		}
+	}
+
+	/** Cancel the task, marking it as timed out. */
+	void timeOut() {
+		if (!isDone()) {
+			timedOut = true;
+			cancel(true);
+		}
+	}
+
+	/**
+	 * Run an action once the task is done, whether it completed, failed or was
+	 * cancelled. The action runs on the thread completing the task, or on the
+	 * calling thread if the task is already done. A task has one action.
+	 * 
+	 * @param action
+	 *           the action
+	 */
+	void whenDone(Runnable action) {
+		synchronized (this) {
+			if (!completed) {
+				listener = action;
+				return;
+			}
+		}
+		action.run();
+	}
+
+	@Override
+	protected void done() {
+		ScheduledFuture<?> t = timeout;
+		if (t != null) {
+			t.cancel(false);
+		}
+
+		Runnable action;
+		synchronized (this) {
+			completed = true;
+			action = listener;
+			listener = null;
+		}
+		if (action != null) {
+			action.run();
+		}
+	}
+
+	/** Evaluates the observation, knowing when the task was submitted. */
+	@RequiredArgsConstructor
+	private static final class Evaluation<I, T, TClean> implements Callable<Observation<T, TClean>> {
+		private final String name;
+		private final Function<I, T> block;
+		private final I input;
+		private final DoubleAction<Operation, Exception> thrown;
+		private final Function<T, TClean> cleaner;
+		private final boolean measureResourceUsage;
+		private volatile long submittedNanos;
+
+		@Override
+		public Observation<T, TClean> call() throws Exception {
+			return Observation.of(name, block, input, thrown, cleaner, measureResourceUsage, submittedNanos);
+		}
+	}
+}
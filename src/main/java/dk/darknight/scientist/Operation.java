@@ -1,5 +1,5 @@
 package dk.darknight.scientist;
 
 public enum Operation {
-	CLEAN, COMPARE, ENABLED, IGNORE, PUBLISH, RUN_IF
+	CLEAN, COMPARE, ENABLED, IGNORE, PUBLISH, REPLAY, RUN_IF, SAMPLE
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.math.IntMath;
+
+/**
+ * Decides the order in which the behaviors of an experiment are started.
+ * <p>
+ * The order is computed per run from a few integers, so picking it neither
+ * allocates nor touches state shared between runs.
+ * </p>
+ */
+public enum OrderingPolicy {
+	/**
+	 * The behaviors are started in a random order, so no behavior consistently
+	 * benefits from warm caches or suffers from contention.
+	 */
+	RANDOM {
+		@Override
+		long seed(int behaviors) {
+			if (behaviors < 2) {
+				return pack(0, 1);
+			}
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int stride = 1 + random.nextInt(behaviors - 1);
+			while (IntMath.gcd(stride, behaviors) != 1) {
+				stride = 1 + random.nextInt(behaviors - 1);
+			}
+			return pack(random.nextInt(behaviors), stride);
+		}
+
+		@Override
+		int behaviorAt(int position, int behaviors, long seed) {
+			int start = (int) (seed >>> 32);
+			int stride = (int) seed;
+			return (int) ((start + (long) position * stride) % behaviors);
+		}
+	},
+	/** The control is started first, then the candidates. */
+	CONTROL_FIRST {
+		@Override
+		int behaviorAt(int position, int behaviors, long seed) {
+			return position;
+		}
+	},
+	/** The candidates are started first, then the control. */
+	CANDIDATES_FIRST {
+		@Override
+		int behaviorAt(int position, int behaviors, long seed) {
+			return position == behaviors - 1 ? 0 : position + 1;
+		}
+	};
+
+	/** Pack the start and stride of a permutation into a seed. */
+	private static long pack(int start, int stride) {
+		return ((long) start << 32) | (stride & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Pick the order of a run.
+	 * 
+	 * @param behaviors
+	 *           the number of behaviors, the control included
+	 * @return a seed to pass to {@link #behaviorAt(int, int, long)}
+	 */
+	long seed(int behaviors) {
+		return 0;
+	}
+
+	/**
+	 * Gets the behavior to start at a position. The control is behavior 0.
+	 * 
+	 * @param position
+	 *           the position in the order, from 0
+	 * @param behaviors
+	 *           the number of behaviors, the control included
+	 * @param seed
+	 *           the seed of the run
+	 * @return the index of the behavior
+	 */
+	abstract int behaviorAt(int position, int behaviors, long seed);
+}
@@ -0,0 +1,19 @@
+package dk.darknight.scientist;
+
+/** Decides what happens to a result when a publishing queue is full. */
+public enum OverflowPolicy {
+	/**
+	 * Block the submitting thread until there is room in the queue. For the
+	 * publishing pipeline this is the thread that completed the run's last
+	 * behavior: the caller of the experiment, a worker of the
+	 * {@link ExperimentExecutor}, the thread completing an asynchronous
+	 * behavior, or the shared timer that cancels candidates on timeout. Since
+	 * those threads serve other experiments too, the pipeline blocks them for
+	 * at most its configured maximum wait and then drops the result.
+	 */
+	BLOCK,
+	/** Discard the result being submitted. */
+	DROP_NEWEST,
+	/** Discard the oldest queued result to make room for the new one. */
+	DROP_OLDEST
+}
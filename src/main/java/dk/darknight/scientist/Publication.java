@@ -0,0 +1,149 @@
+package dk.darknight.scientist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * A task that builds and publishes the result of a run, created by
+ * {@link AbstractExperimentInstance#publication(List, List, Observation, Map)}.
+ * <p>
+ * A publication is ready when all its observations are done, see
+ * {@link #whenReady(Runnable)}, so the {@link PublishingPipeline} never has a
+ * worker wait for a behavior. A publication that fails is reported to the
+ * experiment's thrown handler as {@link Operation#PUBLISH}, and remembers it.
+ * </p>
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+final class Publication<T, TClean> implements Callable<Result<T, TClean>> {
+	private final AbstractExperimentInstance<T, TClean, ?> instance;
+	private final List<? extends Future<Observation<T, TClean>>> observations;
+	private final List<String> observationNames;
+	private final Observation<T, TClean> controlObservation;
+	private final Map<String, Object> contexts;
+	private volatile boolean failed;
+
+	Publication(AbstractExperimentInstance<T, TClean, ?> instance,
+			List<? extends Future<Observation<T, TClean>>> observations, List<String> observationNames,
+			Observation<T, TClean> controlObservation, Map<String, Object> contexts) {
+		this.instance = instance;
+		this.observations = observations;
+		this.observationNames = observationNames;
+		this.controlObservation = controlObservation;
+		this.contexts = contexts;
+	}
+
+	/**
+	 * Build and publish the result. Waits for observations that are not done
+	 * yet.
+	 * 
+	 * @return the published result, or <code>null</code> if publishing failed
+	 */
+	@Override
+	public Result<T, TClean> call() {
+		Result<T, TClean> result = null;
+		try {
+			result = instance.newResult(resolveObservationFutures(), controlObservation, contexts);
+			Scientist.getResultPublisher().publish(result);
+		} catch (Exception e) {
+			failed = true;
+			instance.getThrown().apply(Operation.PUBLISH, e);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the names of the observations that were cancelled, because the
+	 * executor rejected them or they timed out.
+	 */
+	List<String> getCancelledNames() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < observations.size(); i++) {
+			if (observations.get(i).isCancelled()) {
+				names.add(observationNames.get(i));
+			}
+		}
+		return names;
+	}
+
+	/** Gets whether building or publishing the result failed. */
+	boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Run an action once all observations are done. Candidates are cancelled
+	 * when their timeout expires, so this happens within the longest timeout.
+	 * The action runs on the thread completing the last observation, or on the
+	 * calling thread if they are all done.
+	 * 
+	 * @param ready
+	 *           the action
+	 */
+	void whenReady(final Runnable ready) {
+		final AtomicInteger pending = new AtomicInteger(observations.size() + 1);
+		final Runnable countDown = new Runnable() {
+			@Override
+			public void run() {
+				if (pending.decrementAndGet() == 0) {
+					ready.run();
+				}
+			}
+		};
+
+		for (Future<Observation<T, TClean>> f : observations) {
+			if (f instanceof ObservationTask) {
+				((ObservationTask<?, ?>) f).whenDone(countDown);
+			} else if (f instanceof CompletableFuture) {
+				((CompletableFuture<?>) f).whenComplete(new BiConsumer<Object, Throwable>() {
+					@Override
+					public void accept(Object value, Throwable ex) {
+						countDown.run();
+					}
+				});
+			} else {
+				countDown.run();
+			}
+		}
+		countDown.run();
+	}
+
+	/**
+	 * Wait for the candidates to complete. Candidates cancelled by a timeout are
+	 * reported as timed out, while candidates cancelled because the executor was
+	 * saturated are left out.
+	 */
+	private List<Observation<T, TClean>> resolveObservationFutures()
+			throws InterruptedException, ExecutionException {
+		List<Observation<T, TClean>> os = new ArrayList<>();
+		for (int i = 0; i < observations.size(); i++) {
+			Future<Observation<T, TClean>> f = observations.get(i);
+			Observation<T, TClean> o;
+			if (AbstractExperimentInstance.CONTROL_EXPERIMENT_NAME.equals(observationNames.get(i))) {
+				o = controlObservation;
+			} else {
+				try {
+					o = f.get();
+				} catch (CancellationException e) {
+					if (!(f instanceof ObservationTask) || !((ObservationTask<?, ?>) f).isTimedOut()) {
+						continue;
+					}
+					o = Observation.timedOut(observationNames.get(i));
+				}
+			}
+			os.add(o);
+		}
+		return os;
+	}
+}
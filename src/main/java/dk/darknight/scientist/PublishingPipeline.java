@@ -0,0 +1,207 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * The stage that publishes experiment results off the calling thread.
+ * <p>
+ * Experiments whose behaviors are all done are put on a bounded queue, and a
+ * fixed set of worker threads builds the {@link Result} and hands it to the
+ * {@link IResultPublisher}, so a worker never waits for a slow candidate. When the queue is full the
+ * configured {@link OverflowPolicy} decides which result is given up.
+ * </p>
+ * <p>
+ * Workers are daemon threads that are started when the first result is
+ * submitted.
+ * </p>
+ */
+public class PublishingPipeline {
+	private static final Logger log = LoggerFactory.getLogger(PublishingPipeline.class);
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final long DEFAULT_MAX_BLOCK_MILLIS = 1000;
+
+	/** The pipeline used to publish results unless another is configured. */
+	public static final PublishingPipeline DEFAULT = new PublishingPipeline(DEFAULT_CAPACITY, 1,
+			OverflowPolicy.DROP_NEWEST);
+
+	private final BlockingQueue<Callable<?>> queue;
+	private final int workers;
+	private final OverflowPolicy overflowPolicy;
+	private final long maxBlockNanos;
+	private final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("scientist-publisher-%d")
+			.setDaemon(true).build();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean shutdown;
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong published = new AtomicLong();
+
+	/**
+	 * Create a publishing pipeline.
+	 *
+	 * @param capacity
+	 *           the number of results that may wait to be published
+	 * @param workers
+	 *           the number of threads publishing results
+	 * @param overflowPolicy
+	 *           what to do with results that do not fit in the queue
+	 */
+	public PublishingPipeline(int capacity, int workers, @NonNull OverflowPolicy overflowPolicy) {
+		this(capacity, workers, overflowPolicy, DEFAULT_MAX_BLOCK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create a publishing pipeline.
+	 *
+	 * @param capacity
+	 *           the number of results that may wait to be published
+	 * @param workers
+	 *           the number of threads publishing results
+	 * @param overflowPolicy
+	 *           what to do with results that do not fit in the queue
+	 * @param maxBlock
+	 *           how long {@link OverflowPolicy#BLOCK} waits for room in the
+	 *           queue before the result is dropped
+	 * @param unit
+	 *           the unit of <code>maxBlock</code>
+	 */
+	public PublishingPipeline(int capacity, int workers, @NonNull OverflowPolicy overflowPolicy, long maxBlock,
+			@NonNull TimeUnit unit) {
+		Preconditions.checkArgument(capacity > 0, "capacity must be greater than 0");
+		Preconditions.checkArgument(workers > 0, "workers must be greater than 0");
+		Preconditions.checkArgument(maxBlock >= 0, "maxBlock must not be negative");
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.workers = workers;
+		this.overflowPolicy = overflowPolicy;
+		this.maxBlockNanos = unit.toNanos(maxBlock);
+	}
+
+	/** Gets the number of results discarded because the queue was full. */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/** Gets the number of results whose publication failed with an exception. */
+	public long getFailedCount() {
+		return failed.get();
+	}
+
+	/** Gets the number of results handed to the publisher. */
+	public long getPublishedCount() {
+		return published.get();
+	}
+
+	/** Gets the number of results waiting to be published. */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Stop the workers once the results already queued are published. Results
+	 * submitted afterwards are dropped.
+	 */
+	public void shutdown() {
+		shutdown = true;
+	}
+
+	/**
+	 * Queue a publication.
+	 *
+	 * @param publication
+	 *           a task that builds and publishes a result
+	 * @return <code>true</code>, if the publication was queued
+	 */
+	boolean submit(@NonNull Callable<?> publication) {
+		if (shutdown) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		start();
+
+		switch (overflowPolicy) {
+		case BLOCK:
+			// The submitting thread may be the shared timeout timer or an executor
+			// worker, so it is never parked indefinitely
+			try {
+				if (queue.offer(publication, maxBlockNanos, TimeUnit.NANOSECONDS)) {
+					return true;
+				}
+				dropped.incrementAndGet();
+				return false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				dropped.incrementAndGet();
+				return false;
+			}
+		case DROP_OLDEST:
+			while (!queue.offer(publication)) {
+				if (queue.poll() != null) {
+					dropped.incrementAndGet();
+				}
+			}
+			return true;
+		default:
+			if (queue.offer(publication)) {
+				return true;
+			}
+			dropped.incrementAndGet();
+			return false;
+		}
+	}
+
+	private void start() {
+		if (started.get() || !started.compareAndSet(false, true)) {
+			return;
+		}
+
+		for (int i = 0; i < workers; i++) {
+			threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}).start();
+		}
+	}
+
+	private void work() {
+		while (!shutdown || !queue.isEmpty()) {
+			Callable<?> publication;
+			try {
+				publication = queue.poll(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (publication == null) {
+				continue;
+			}
+
+			try {
+				publication.call();
+				if (publication instanceof Publication && ((Publication<?, ?>) publication).isFailed()) {
+					failed.incrementAndGet();
+				} else {
+					published.incrementAndGet();
+				}
+			} catch (Exception e) {
+				failed.incrementAndGet();
+				log.warn("Failed to publish experiment result", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package dk.darknight.scientist;
+
+import lombok.Getter;
+
+/**
+ * An exception thrown by a recorded control, standing in for the original
+ * exception when the run is replayed, see {@link ExperimentReplayer}. It is
+ * equivalent to exceptions of the recorded class with the recorded message.
+ */
+public class RecordedException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/** Gets the name of the class of the original exception. */
+	@Getter
+	private final String exceptionClassName;
+
+	public RecordedException(String exceptionClassName, String message) {
+		super(message, null, false, false);
+		this.exceptionClassName = exceptionClassName;
+	}
+
+	@Override
+	public String toString() {
+		String message = getMessage();
+		return message == null ? exceptionClassName : exceptionClassName + ": " + message;
+	}
+}
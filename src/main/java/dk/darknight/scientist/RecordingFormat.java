@@ -0,0 +1,80 @@
+package dk.darknight.scientist;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * The layout of a recording, shared by {@link ExperimentRecorder} and
+ * {@link ExperimentReplayer}.
+ * <p>
+ * A recording starts with {@link #MAGIC} and {@link #VERSION}, followed by
+ * records of an int length and a body. The body holds the timestamp, the
+ * experiment name, the contexts as strings, the encoded input, whether the
+ * control threw, then either the exception's class name and message or the
+ * encoded value, and finally the control's duration in nanoseconds. Strings
+ * and byte arrays are written as an int length, -1 for <code>null</code>,
+ * followed by their bytes. No record or byte array is longer than
+ * {@link #MAXIMUM_RECORD_BYTES}, so any other length means the recording is
+ * corrupt.
+ * </p>
+ * <p>
+ * A record cut short by a crash ends the recording when it is replayed, and
+ * is truncated away when an {@link ExperimentRecorder} opens the recording
+ * again, so the records it appends can be read.
+ * </p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class RecordingFormat {
+	/** "SREC" */
+	static final int MAGIC = 0x53524543;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 8;
+	static final int MAXIMUM_RECORD_BYTES = 64 << 20;
+
+	/**
+	 * Check the length of a record or byte array read from a recording.
+	 * 
+	 * @throws IOException
+	 *            if the length is negative or larger than
+	 *            {@link #MAXIMUM_RECORD_BYTES}
+	 */
+	static int checkLength(int length) throws IOException {
+		if (length < 0 || length > MAXIMUM_RECORD_BYTES) {
+			throw new IOException("Corrupt recording, invalid length " + length);
+		}
+		return length;
+	}
+
+	static void writeString(DataOutput out, String s) throws IOException {
+		writeBytes(out, s == null ? null : s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String readString(DataInput in) throws IOException {
+		byte[] bytes = readBytes(in);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	static byte[] readBytes(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[checkLength(length)];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
@@ -4,77 +4,174 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
-import lombok.Value;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@Value
+/**
+ * The outcome of an experiment run.
+ * <p>
+ * The candidates are compared with the control the first time a publisher
+ * asks for the outcome of the comparison, on the publisher's thread, and the
+ * outcome is kept. A publisher that only looks at e.g. durations never pays
+ * for comparing.
+ * </p>
+ */
+@EqualsAndHashCode(of = { "experimentName", "control", "observations", "contexts" })
+@ToString(of = { "experimentName", "control", "observations", "contexts" })
 public class Result<T, TClean> {
-	/** Gets all of the candidate observations. */
-	ImmutableList<Observation<T, TClean>> candidates;
-
 	/** Gets the controlled observation. */
-	Observation<T, TClean> control;
+	@Getter
+	private final Observation<T, TClean> control;
 
 	/** Gets the name of the experiment. */
-	String experimentName;
+	@Getter
+	private final String experimentName;
 
-	/**
-	 * Gets whether the candidate observations matched the controlled
-	 * observation.
-	 */
-	public boolean isMatched() {
-		return mismatchedObservations.isEmpty() || !ignoredObservations.isEmpty();
+	private final AbstractExperimentInstance<T, TClean, ?> experiment;
+	private final List<Observation<T, TClean>> observations;
+	private final Map<String, Object> contexts;
+
+	private final Supplier<ImmutableList<Observation<T, TClean>>> candidates = Suppliers
+			.memoize(new Supplier<ImmutableList<Observation<T, TClean>>>() {
+				@Override
+				public ImmutableList<Observation<T, TClean>> get() {
+					ImmutableList.Builder<Observation<T, TClean>> builder = ImmutableList.builder();
+					for (Observation<T, TClean> o : observations) {
+						if (o != control) {
+							builder.add(o);
+						}
+					}
+					return builder.build();
+				}
+			});
+
+	private final Supplier<ImmutableList<Observation<T, TClean>>> immutableObservations = Suppliers
+			.memoize(new Supplier<ImmutableList<Observation<T, TClean>>>() {
+				@Override
+				public ImmutableList<Observation<T, TClean>> get() {
+					return ImmutableList.copyOf(observations);
+				}
+			});
+
+	private final Supplier<ImmutableMap<String, Object>> immutableContexts = Suppliers
+			.memoize(new Supplier<ImmutableMap<String, Object>>() {
+				@Override
+				public ImmutableMap<String, Object> get() {
+					return ImmutableMap.copyOf(contexts);
+				}
+			});
+
+	private final Supplier<Comparison> comparison = Suppliers.memoize(new Supplier<Comparison>() {
+		@Override
+		public Comparison get() {
+			return new Comparison();
+		}
+	});
+
+	/** The candidates sorted by how they compare to the control. */
+	private final class Comparison {
+		private final ImmutableList<Observation<T, TClean>> mismatched;
+		private final ImmutableList<Observation<T, TClean>> ignored;
+		private final ImmutableList<Observation<T, TClean>> timedOut;
+
+		private Comparison() {
+			List<Observation<T, TClean>> tmpMismatched = new ArrayList<>();
+			List<Observation<T, TClean>> tmpIgnored = new ArrayList<>();
+			List<Observation<T, TClean>> tmpTimedOut = new ArrayList<>();
+
+			for (Observation<T, TClean> candidate : getCandidates()) {
+				if (candidate.isTimedOut()) {
+					tmpTimedOut.add(candidate);
+				}
+				if (!candidate.equivalentTo(control, experiment.getComparator())) {
+					if (experiment.ignoreMismatchedObservation(control, candidate)) {
+						tmpIgnored.add(candidate);
+					} else {
+						tmpMismatched.add(candidate);
+					}
+				}
+			}
+			this.mismatched = ImmutableList.copyOf(tmpMismatched);
+			this.ignored = ImmutableList.copyOf(tmpIgnored);
+			this.timedOut = ImmutableList.copyOf(tmpTimedOut);
+		}
+	}
+
+	public Result(AbstractExperimentInstance<T, TClean, ?> experiment, List<Observation<T, TClean>> observations,
+			Observation<T, TClean> control, Map<String, Object> contexts) {
+		this.experiment = experiment;
+		this.observations = observations;
+		this.control = control;
+		this.experimentName = experiment.getName();
+		this.contexts = contexts;
 	}
 
 	/**
-	 * Gets whether any of the candidate observations did not match the
-	 * controlled observation.
+	 * Gets whether a list holds an observation. Observations are compared by
+	 * identity, as equal observations of different candidates are not the
+	 * same.
 	 */
-	public boolean isMismatched() {
-		return !isMatched();
-	};
+	static boolean containsInstance(List<?> observations, Object observation) {
+		for (Object o : observations) {
+			if (o == observation) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Gets all of the candidate observations. */
+	public ImmutableList<Observation<T, TClean>> getCandidates() {
+		return candidates.get();
+	}
+
+	/** Gets the context data supplied to the experiment. */
+	public ImmutableMap<String, Object> getContexts() {
+		return immutableContexts.get();
+	}
+
+	/** Gets all of the mismatched observations whos values where ignored. */
+	public ImmutableList<Observation<T, TClean>> getIgnoredObservations() {
+		return comparison.get().ignored;
+	}
 
 	/**
 	 * Gets all of the observations that did not match the controlled
 	 * observation.
 	 */
-	ImmutableList<Observation<T, TClean>> mismatchedObservations;
+	public ImmutableList<Observation<T, TClean>> getMismatchedObservations() {
+		return comparison.get().mismatched;
+	}
 
 	/** Gets all of the observations. */
-	ImmutableList<Observation<T, TClean>> observations;
+	public ImmutableList<Observation<T, TClean>> getObservations() {
+		return immutableObservations.get();
+	}
 
-	/** Gets all of the mismatched observations whos values where ignored. */
-	ImmutableList<Observation<T, TClean>> ignoredObservations;
+	/** Gets all of the candidate observations that were cancelled because they timed out. */
+	public ImmutableList<Observation<T, TClean>> getTimedOutObservations() {
+		return comparison.get().timedOut;
+	}
 
-	/** Gets the context data supplied to the experiment. */
-	public ImmutableMap<String, Object> contexts;
+	/**
+	 * Gets whether the candidate observations matched the controlled
+	 * observation.
+	 */
+	public boolean isMatched() {
+		return getMismatchedObservations().isEmpty() || !getIgnoredObservations().isEmpty();
+	}
 
-	public Result(ExperimentInstance<T, TClean> experiment, List<Observation<T, TClean>> observations,
-			Observation<T, TClean> control, Map<String, Object> contexts) {
-		List<Observation<T, TClean>> tmpCandidates = new ArrayList<>();
-		tmpCandidates.addAll(observations);
-		tmpCandidates.remove(control);
-		this.candidates = ImmutableList.copyOf(tmpCandidates);
-		this.control = control;
-		this.experimentName = experiment.getName();
-		this.observations = ImmutableList.copyOf(observations);
-		this.contexts = ImmutableMap.copyOf(contexts);
-
-		List<Observation<T, TClean>> tmpMismatchedObservations = new ArrayList<>();
-		List<Observation<T, TClean>> tmpIgnoredObservations = new ArrayList<>();
-
-		for (Observation<T, TClean> candidate : candidates) {
-			if (!candidate.equivalentTo(control, experiment.getComparator())) {
-				if (experiment.ignoreMismatchedObservation(control, candidate)) {
-					tmpIgnoredObservations.add(candidate);
-				} else {
-					tmpMismatchedObservations.add(candidate);
-				}
-			}
-		}
-		this.ignoredObservations = ImmutableList.copyOf(tmpIgnoredObservations);
-		this.mismatchedObservations = ImmutableList.copyOf(tmpMismatchedObservations);
+	/**
+	 * Gets whether any of the candidate observations did not match the
+	 * controlled observation.
+	 */
+	public boolean isMismatched() {
+		return !isMatched();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+package dk.darknight.scientist;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Factory for the built-in {@link ISampler}s. None of them lock, so they are
+ * safe to use on the hottest code paths.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Samplers {
+	private static final ISampler ALWAYS = new ISampler() {
+		@Override
+		public boolean sample(String experimentName, Map<String, Object> contexts) {
+			return true;
+		}
+	};
+
+	/** Samples a fixed percentage of runs, using a thread local random number generator. */
+	private static final class PercentageSampler implements ISampler {
+		private final double fraction;
+
+		PercentageSampler(double percentage) {
+			this.fraction = percentage / 100;
+		}
+
+		@Override
+		public boolean sample(String experimentName, Map<String, Object> contexts) {
+			return ThreadLocalRandom.current().nextDouble() < fraction;
+		}
+	}
+
+	/**
+	 * Caps the number of sampled runs per second with a token bucket. The
+	 * bucket is kept as a single theoretical arrival time (the generic cell
+	 * rate algorithm), so it can be updated with compare-and-set.
+	 */
+	private static final class RateLimitingSampler implements ISampler {
+		private final long intervalNanos;
+		private final long toleranceNanos;
+		private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+		RateLimitingSampler(double runsPerSecond, int burst) {
+			this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / runsPerSecond));
+			this.toleranceNanos = intervalNanos * (burst - 1);
+		}
+
+		@Override
+		public boolean sample(String experimentName, Map<String, Object> contexts) {
+			final long now = System.nanoTime();
+			while (true) {
+				long arrival = theoreticalArrival.get();
+				if (arrival - now > toleranceNanos) {
+					return false;
+				}
+				if (theoreticalArrival.compareAndSet(arrival, Math.max(arrival, now) + intervalNanos)) {
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Samples a fixed percentage of the values of a context key. The same value
+	 * is always either sampled or not.
+	 */
+	private static final class KeySampler implements ISampler {
+		private static final int BUCKETS = 10000;
+
+		private final String contextKey;
+		private final int sampledBuckets;
+
+		KeySampler(String contextKey, double percentage) {
+			this.contextKey = contextKey;
+			this.sampledBuckets = (int) Math.round(percentage * BUCKETS / 100);
+		}
+
+		/** The MurmurHash3 finalizer, spreading the bits of poor hash codes. */
+		private static int mix(int h) {
+			h ^= h >>> 16;
+			h *= 0x85ebca6b;
+			h ^= h >>> 13;
+			h *= 0xc2b2ae35;
+			h ^= h >>> 16;
+			return h;
+		}
+
+		@Override
+		public boolean sample(String experimentName, Map<String, Object> contexts) {
+			Object value = contexts.get(contextKey);
+			if (value == null) {
+				return false;
+			}
+			return Math.floorMod(mix(value.hashCode()), BUCKETS) < sampledBuckets;
+		}
+	}
+
+	/** A sampler that samples every run. */
+	public static ISampler always() {
+		return ALWAYS;
+	}
+
+	/**
+	 * A sampler that samples runs at random.
+	 * 
+	 * @param percentage
+	 *           the percentage of runs to sample, between 0 and 100
+	 */
+	public static ISampler percentage(double percentage) {
+		checkPercentage(percentage);
+		return new PercentageSampler(percentage);
+	}
+
+	/**
+	 * A sampler that samples at most a number of runs per second, with bursts of
+	 * up to one second's worth of runs.
+	 * 
+	 * @param runsPerSecond
+	 *           the maximum sustained number of sampled runs per second
+	 */
+	public static ISampler rateLimited(double runsPerSecond) {
+		return rateLimited(runsPerSecond, (int) Math.max(1, Math.ceil(runsPerSecond)));
+	}
+
+	/**
+	 * A sampler that samples at most a number of runs per second.
+	 * 
+	 * @param runsPerSecond
+	 *           the maximum sustained number of sampled runs per second
+	 * @param burst
+	 *           the number of runs that may be sampled back to back after a
+	 *           quiet period
+	 */
+	public static ISampler rateLimited(double runsPerSecond, int burst) {
+		Preconditions.checkArgument(runsPerSecond > 0, "runsPerSecond must be greater than 0");
+		Preconditions.checkArgument(burst > 0, "burst must be greater than 0");
+		return new RateLimitingSampler(runsPerSecond, burst);
+	}
+
+	/**
+	 * A sampler that consistently samples a percentage of the values of a
+	 * context, e.g. a user id. Runs without the context are not sampled.
+	 * 
+	 * @param contextKey
+	 *           the key of the context to sample by, as given to
+	 *           {@link IExperimentBase#addContext(String, Object)}
+	 * @param percentage
+	 *           the percentage of values to sample, between 0 and 100
+	 */
+	public static ISampler byKey(@NonNull String contextKey, double percentage) {
+		checkPercentage(percentage);
+		return new KeySampler(contextKey, percentage);
+	}
+
+	private static void checkPercentage(double percentage) {
+		Preconditions.checkArgument(percentage >= 0 && percentage <= 100, "percentage must be between 0 and 100");
+	}
+}
@@ -1,10 +1,23 @@
 package dk.darknight.scientist;
 
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 
+import dk.darknight.scientist.functions.AsyncExperimentFunction;
+import dk.darknight.scientist.functions.ExperimentDefinitionFunction;
 import dk.darknight.scientist.functions.ExperimentFunction;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -20,28 +33,135 @@ import lombok.val;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class Scientist {
 	private static Supplier<Boolean> enabled = Suppliers.ofInstance(true);
+	private static IExperimentExecutor experimentExecutor = ExperimentExecutor.DEFAULT;
+	private static volatile ExperimentGovernor governor;
+	private static volatile long defaultTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+	private static PublishingPipeline publishingPipeline = PublishingPipeline.DEFAULT;
 	private static IResultPublisher resultPublisher = LogPublisher.DEFAULT;
+	private static ISampler sampler = Samplers.always();
+
+	/** Whether Scientist is enabled, looked up on every call. */
+	private static final Supplier<Boolean> ENABLED = new Supplier<Boolean>() {
+		@Override
+		public Boolean get() {
+			return getEnabled().get();
+		}
+	};
+
+	/** The answer of an enabled check that already passed for this run. */
+	private static final Supplier<Boolean> EVALUATED = Suppliers.ofInstance(true);
 
 	private static <T, TClean> Experiment<T, TClean> build(String name, int concurrentTasks,
-			ExperimentFunction<T, TClean> experiment) {
+			Supplier<Boolean> enabled, ExperimentFunction<T, TClean> experiment) {
 		val experimentBuilder = new Experiment<T, TClean>(name, enabled, concurrentTasks);
+		experimentBuilder.clean(Scientist.<TClean, T>getDefaultCleaner());
 		experiment.apply(experimentBuilder);
 		return experimentBuilder;
 	}
 
+	private static <T, TClean> AsyncExperiment<T, TClean> buildAsync(String name,
+			AsyncExperimentFunction<T, TClean> experiment) {
+		val experimentBuilder = new AsyncExperiment<T, TClean>(name, enabled);
+		experimentBuilder.clean(Scientist.<TClean, T>getDefaultCleaner());
+		experiment.apply(experimentBuilder);
+		return experimentBuilder;
+	}
+
+	private static <T, E, TClean> StreamingComparison<T, E, TClean> buildStreaming(String name,
+			Supplier<Boolean> enabled, ExperimentFunction<T, TClean> experiment, Function<T, Iterator<E>> elements,
+			Comparator<? super E> comparator) {
+		return new StreamingComparison<>(build(name, 1, enabled, experiment).settings(), elements, comparator);
+	}
+
 	@SuppressWarnings("unchecked")
 	private static <TClean, T> Function<T, TClean> getDefaultCleaner() {
 		return (Function<T, TClean>) Functions.identity();
 	}
 
+	/**
+	 * Ask whether Scientist is enabled, once per run, so the experiment does not
+	 * ask again.
+	 * 
+	 * @return <code>null</code> if Scientist is disabled, or else the enabled
+	 *         check of the experiment. Failures are left for the experiment,
+	 *         whose check rethrows them to its {@link IExperimentBase#thrown}
+	 *         handler.
+	 */
+	private static Supplier<Boolean> evaluateEnabled() {
+		try {
+			return getEnabled().get() ? EVALUATED : null;
+		} catch (final RuntimeException e) {
+			return new Supplier<Boolean>() {
+				@Override
+				public Boolean get() {
+					throw e;
+				}
+			};
+		}
+	}
+
+	/** Run only the control of an experiment while Scientist is disabled. */
+	private static <T, TClean> T runControl(int concurrentTasks, ExperimentFunction<T, TClean> experiment) {
+		Preconditions.checkArgument(concurrentTasks > 0, "concurrentTasks must be greater than 0");
+		DisabledExperiment<T, TClean> disabled = DisabledExperiment.acquire();
+		Supplier<T> control;
+		try {
+			experiment.apply(disabled);
+		} finally {
+			control = disabled.release();
+		}
+		Preconditions.checkState(control != null, "The experiment must define a control with use()");
+		return control.get();
+	}
+
+	static Supplier<Boolean> getEnabled() {
+		synchronized (enabled) {
+			return enabled;
+		}
+	}
+
+	static IExperimentExecutor getExperimentExecutor() {
+		synchronized (experimentExecutor) {
+			return experimentExecutor;
+		}
+	}
+
+	static long getDefaultTimeoutNanos() {
+		return defaultTimeoutNanos;
+	}
+
+	static ExperimentGovernor getGovernor() {
+		return governor;
+	}
+
+	static PublishingPipeline getPublishingPipeline() {
+		synchronized (publishingPipeline) {
+			return publishingPipeline;
+		}
+	}
+
 	static IResultPublisher getResultPublisher() {
 		synchronized (resultPublisher) {
 			return resultPublisher;
 		}
 	}
 
+	static ISampler getSampler() {
+		synchronized (sampler) {
+			return sampler;
+		}
+	}
+
 	/**
 	 * Conduct a synchronous experiment
+	 * <p>
+	 * While Scientist is disabled, only the control of the experiment is kept
+	 * and run, and nothing is allocated on its behalf. Experiments that are
+	 * often turned off by {@link IExperimentBase#runIf(Supplier)} or
+	 * {@link IExperimentBase#sample(ISampler)} should be compiled with
+	 * {@link #compile(String, ExperimentDefinitionFunction)}, which skips such
+	 * runs without allocating either.
+	 * </p>
 	 * 
 	 * @param <T>
 	 *           The return type of the experiment.
@@ -56,21 +176,306 @@ public class Scientist {
 	}
 
 	public static <T, TClean> T science(@NonNull String name, int concurrentTasks, @NonNull ExperimentFunction<T, TClean> experiment) {
-		val builder = build(name, concurrentTasks, experiment);
+		// Most calls take this path, so it must not allocate
+		Supplier<Boolean> enabled = evaluateEnabled();
+		if (enabled == null) {
+			return runControl(concurrentTasks, experiment);
+		}
+
+		val builder = build(name, concurrentTasks, enabled, experiment);
+		return builder.build().run(null);
+	}
+
+	/**
+	 * Conduct a synchronous experiment whose behaviors return iterators. The
+	 * elements are compared with {@link Object#equals(Object)}.
+	 * 
+	 * @see #scienceIterator(String, Comparator, ExperimentFunction)
+	 */
+	public static <E, TClean> Iterator<E> scienceIterator(@NonNull String name,
+			@NonNull ExperimentFunction<Iterator<E>, TClean> experiment) {
+		return scienceIterator(name, StreamingComparison.EQUALITY, experiment);
+	}
+
+	/**
+	 * Conduct a synchronous experiment whose behaviors return iterators.
+	 * <p>
+	 * The control's elements are returned unchanged, and compared element by
+	 * element with the candidates' as they are consumed, without holding either
+	 * sequence in memory. The result is published once the returned iterator is
+	 * exhausted, and its first difference is that of the first differing
+	 * element. The experiment's own comparator is not used.
+	 * </p>
+	 * <p>
+	 * The candidates consume their iterators while the caller consumes the
+	 * control's, so their timeouts must cover the time the caller takes. Unless
+	 * the experiment defines its own executor, they run on workers kept apart
+	 * from the experiment executor, and a candidate that finds no free worker
+	 * is left out of the result. A candidate that falls too far behind the
+	 * control is reported as having thrown rather than slowing the caller down.
+	 * </p>
+	 * <p>
+	 * The returned iterator is {@link AutoCloseable}. Closing it before it is
+	 * exhausted, or dropping it, stops the candidates without publishing.
+	 * </p>
+	 * 
+	 * @param <E>
+	 *           The type of the elements.
+	 * @param name
+	 *           Name of the experiment
+	 * @param comparator
+	 *           Compares the elements. A zero return value means the elements
+	 *           are equivalent.
+	 * @param experiment
+	 *           Experiment callback used to configure the experiment
+	 * @return The elements of the experiment's control function.
+	 */
+	public static <E, TClean> Iterator<E> scienceIterator(@NonNull String name,
+			@NonNull Comparator<? super E> comparator, @NonNull ExperimentFunction<Iterator<E>, TClean> experiment) {
+		Supplier<Boolean> enabled = evaluateEnabled();
+		if (enabled == null) {
+			return runControl(1, experiment);
+		}
+
+		StreamingComparison<Iterator<E>, E, TClean> comparison = buildStreaming(name, enabled, experiment,
+				Functions.<Iterator<E>>identity(), comparator);
+		return comparison.iterator(comparison.run());
+	}
+
+	/**
+	 * Conduct a synchronous experiment whose behaviors return streams. The
+	 * elements are compared with {@link Object#equals(Object)}.
+	 * 
+	 * @see #scienceStream(String, Comparator, ExperimentFunction)
+	 */
+	public static <E, TClean> Stream<E> scienceStream(@NonNull String name,
+			@NonNull ExperimentFunction<Stream<E>, TClean> experiment) {
+		return scienceStream(name, StreamingComparison.EQUALITY, experiment);
+	}
+
+	/**
+	 * Conduct a synchronous experiment whose behaviors return streams.
+	 * <p>
+	 * The streams are compared like the iterators of
+	 * {@link #scienceIterator(String, Comparator, ExperimentFunction)}. The
+	 * candidates' streams are closed when they have been compared, and closing
+	 * the returned stream before it is consumed stops the comparison without
+	 * publishing.
+	 * </p>
+	 * 
+	 * @param <E>
+	 *           The type of the elements.
+	 * @param name
+	 *           Name of the experiment
+	 * @param comparator
+	 *           Compares the elements. A zero return value means the elements
+	 *           are equivalent.
+	 * @param experiment
+	 *           Experiment callback used to configure the experiment
+	 * @return A sequential stream of the elements of the experiment's control
+	 *         function.
+	 */
+	public static <E, TClean> Stream<E> scienceStream(@NonNull String name, @NonNull Comparator<? super E> comparator,
+			@NonNull ExperimentFunction<Stream<E>, TClean> experiment) {
+		Supplier<Boolean> enabled = evaluateEnabled();
+		if (enabled == null) {
+			return runControl(1, experiment);
+		}
+
+		final StreamingComparison<Stream<E>, E, TClean> comparison = buildStreaming(name, enabled, experiment,
+				new Function<Stream<E>, Iterator<E>>() {
+					@Override
+					public Iterator<E> apply(Stream<E> stream) {
+						return stream.iterator();
+					}
+				}, comparator);
+		final Stream<E> control = comparison.run();
+		if (!comparison.isComparing()) {
+			return control;
+		}
+
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(comparison.iterator(control), Spliterator.ORDERED), false)
+				.onClose(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							control.close();
+						} finally {
+							comparison.abandon();
+						}
+					}
+				});
+	}
+
+	/**
+	 * Conduct a synchronous experiment whose behaviors process a batch of
+	 * inputs. The elements are compared with {@link Object#equals(Object)}.
+	 * 
+	 * @see #scienceBatch(String, Comparator, ExperimentFunction)
+	 */
+	public static <E, TClean> List<E> scienceBatch(@NonNull String name,
+			@NonNull ExperimentFunction<List<E>, TClean> experiment) {
+		return scienceBatch(name, StreamingComparison.EQUALITY, experiment);
+	}
+
+	/**
+	 * Conduct a synchronous experiment whose behaviors process a batch of
+	 * inputs, and return a list with an element per input.
+	 * <p>
+	 * The run is published as a single {@link BatchResult}. Its lists are
+	 * compared element by element in parallel on the common fork-join pool,
+	 * and it holds the indices of every differing element of each candidate.
+	 * Its first difference is that of the first differing element. The
+	 * experiment's own comparator is not used.
+	 * </p>
+	 * 
+	 * @param <E>
+	 *           The type of the elements.
+	 * @param name
+	 *           Name of the experiment
+	 * @param comparator
+	 *           Compares the elements. A zero return value means the elements
+	 *           are equivalent.
+	 * @param experiment
+	 *           Experiment callback used to configure the experiment
+	 * @return The elements of the experiment's control function.
+	 */
+	public static <E, TClean> List<E> scienceBatch(@NonNull String name, @NonNull Comparator<? super E> comparator,
+			@NonNull ExperimentFunction<List<E>, TClean> experiment) {
+		Supplier<Boolean> enabled = evaluateEnabled();
+		if (enabled == null) {
+			return runControl(1, experiment);
+		}
+
+		return new BatchComparison<E, TClean>(build(name, 1, enabled, experiment).settings(), comparator).run();
+	}
+
+	/**
+	 * Compile an experiment that is defined once and run many times.
+	 * 
+	 * @param <I>
+	 *           The input type of the experiment.
+	 * @param <T>
+	 *           The return type of the experiment.
+	 * @param name
+	 *           Name of the experiment
+	 * @param definition
+	 *           Callback used to define the experiment
+	 * @return The compiled experiment.
+	 */
+	public static <I, T, TClean> CompiledExperiment<I, T, TClean> compile(@NonNull String name,
+			@NonNull ExperimentDefinitionFunction<I, T, TClean> definition) {
+		return compile(name, 1, definition);
+	}
+
+	public static <I, T, TClean> CompiledExperiment<I, T, TClean> compile(@NonNull String name, int concurrentTasks,
+			@NonNull ExperimentDefinitionFunction<I, T, TClean> definition) {
+		val builder = new ExperimentDefinition<I, T, TClean>(name, ENABLED, concurrentTasks);
 		builder.clean(Scientist.<TClean, T>getDefaultCleaner());
+		definition.apply(builder);
+		ExperimentInstance<I, T, TClean> instance = builder.build();
+		Preconditions.checkState(instance.getControl() != null, "The experiment must define a control with use()");
+		return new CompiledExperiment<>(instance);
+	}
+
+	/**
+	 * Conduct an asynchronous experiment
+	 * <p>
+	 * No thread is blocked waiting for the behaviors. The returned future
+	 * completes as soon as the control's future completes, while the candidates
+	 * are compared and published when their futures complete.
+	 * </p>
+	 * 
+	 * @param <T>
+	 *           The return type of the experiment.
+	 * @param name
+	 *           Name of the experiment
+	 * @param experiment
+	 *           Experiment callback used to configure the experiment
+	 * @return A future completing with the value of the experiment's control
+	 *         function.
+	 */
+	public static <T, TClean> CompletableFuture<T> scienceAsync(@NonNull String name,
+			@NonNull AsyncExperimentFunction<T, TClean> experiment) {
+		val builder = buildAsync(name, experiment);
 		return builder.build().run();
 	}
 
+	/**
+	 * Set how long candidates are given to complete, unless their experiment
+	 * defines its own timeout with {@link IExperimentBase#setTimeout(long, TimeUnit)}.
+	 * 
+	 * @param timeout
+	 *           The timeout. Defaults to 5 seconds.
+	 * @param unit
+	 *           The unit of the timeout.
+	 */
+	public static void setDefaultTimeout(long timeout, @NonNull TimeUnit unit) {
+		Preconditions.checkArgument(timeout > 0, "timeout must be greater than 0");
+		defaultTimeoutNanos = unit.toNanos(timeout);
+	}
+
 	public static void setEnabled(@NonNull Supplier<Boolean> enabled) {
 		synchronized (enabled) {
 			Scientist.enabled = enabled;
 		}
 	}
 
+	/**
+	 * Set the executor used to run the behaviors of experiments that do not
+	 * define their own with {@link IExperiment#setExecutor(IExperimentExecutor)}.
+	 * 
+	 * @param experimentExecutor
+	 *           The shared executor. Defaults to {@link ExperimentExecutor#DEFAULT}.
+	 */
+	public static void setExperimentExecutor(@NonNull IExperimentExecutor experimentExecutor) {
+		synchronized (experimentExecutor) {
+			Scientist.experimentExecutor = experimentExecutor;
+		}
+	}
+
+	/**
+	 * Set the governor that sheds the load of experiments that do not define
+	 * their own with {@link IExperimentBase#setGovernor(ExperimentGovernor)}.
+	 * 
+	 * @param governor
+	 *           The governor, or <code>null</code> to never shed load, which is
+	 *           the default.
+	 */
+	public static void setGovernor(ExperimentGovernor governor) {
+		Scientist.governor = governor;
+	}
+
+	/**
+	 * Set the pipeline that publishes results off the calling thread.
+	 * 
+	 * @param publishingPipeline
+	 *           The pipeline. Defaults to {@link PublishingPipeline#DEFAULT}.
+	 */
+	public static void setPublishingPipeline(@NonNull PublishingPipeline publishingPipeline) {
+		synchronized (publishingPipeline) {
+			Scientist.publishingPipeline = publishingPipeline;
+		}
+	}
+
 	public static void setResultPublisher(IResultPublisher resultPublisher) {
 		synchronized (resultPublisher) {
 			Scientist.resultPublisher = resultPublisher;
 		}
 	}
 
+	/**
+	 * Set the sampler that decides which runs of all experiments are sampled,
+	 * e.g. to cap the total number of experiments per second.
+	 * 
+	 * @param sampler
+	 *           The sampler. Defaults to {@link Samplers#always()}.
+	 */
+	public static void setSampler(@NonNull ISampler sampler) {
+		synchronized (sampler) {
+			Scientist.sampler = sampler;
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package dk.darknight.scientist;
+
+import lombok.Value;
+
+/** The counters of a sink of a {@link FanOutPublisher}. */
+@Value
+public class SinkStatistics {
+	/** Gets the name of the sink. */
+	String name;
+
+	/** Gets the number of results the sink published. */
+	long published;
+
+	/** Gets the number of results discarded because the sink's queue was full. */
+	long dropped;
+
+	/** Gets the number of results the sink failed to publish. */
+	long failed;
+
+	/** Gets the number of results skipped while the sink was quarantined. */
+	long quarantined;
+
+	/** Gets the number of results waiting for the sink. */
+	int queueDepth;
+
+	/** Gets the total time the sink spent publishing, in nanoseconds. */
+	long totalLatencyNanos;
+
+	/** Gets the longest time the sink spent publishing a result, in nanoseconds. */
+	long maximumLatencyNanos;
+
+	/** Gets whether the sink is quarantined after failing. */
+	boolean quarantinedNow;
+
+	/** Gets the average time the sink spent publishing a result, in nanoseconds. */
+	public long getAverageLatencyNanos() {
+		long attempts = published + failed;
+		return attempts == 0 ? 0 : totalLatencyNanos / attempts;
+	}
+}
@@ -0,0 +1,161 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Ticker;
+
+/**
+ * A lock-free, fixed-memory latency histogram over a sliding time window.
+ * <p>
+ * Latencies are counted in log-linear buckets: every power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets, so a reported percentile is within
+ * about 3% of the recorded latency. Latencies above {@link #MAXIMUM_NANOS} are
+ * counted in the highest bucket.
+ * </p>
+ * <p>
+ * The window is split into slices that are reused in a ring. A slice is
+ * cleared by the first recording after it falls out of the window, so
+ * recordings made concurrently with the clear may be lost. This is the price
+ * of never taking a lock on the experiment's path.
+ * </p>
+ */
+final class SlidingHistogram {
+	/** The number of linear buckets per power of two. */
+	static final int SUB_BUCKETS = 32;
+	private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+	/** The highest latency that is told apart from higher ones, about 73 minutes. */
+	static final long MAXIMUM_NANOS = (1L << 42) - 1;
+
+	/** The number of buckets needed to count latencies up to {@link #MAXIMUM_NANOS}. */
+	static final int BUCKETS = bucketOf(MAXIMUM_NANOS) + 1;
+
+	private final Ticker ticker;
+	private final long sliceNanos;
+	private final Slice[] slices;
+
+	/**
+	 * Create a histogram.
+	 * 
+	 * @param windowNanos
+	 *           the length of the window
+	 * @param slices
+	 *           the number of slices the window is split into
+	 * @param ticker
+	 *           the source of time
+	 */
+	SlidingHistogram(long windowNanos, int slices, Ticker ticker) {
+		this.ticker = ticker;
+		this.sliceNanos = Math.max(1, windowNanos / slices);
+		this.slices = new Slice[slices];
+		for (int i = 0; i < slices; i++) {
+			this.slices[i] = new Slice();
+		}
+	}
+
+	/**
+	 * Record a latency.
+	 * 
+	 * @param nanos
+	 *           the latency in nanoseconds
+	 * @param mismatched
+	 *           whether the recorded run or candidate mismatched
+	 */
+	void record(long nanos, boolean mismatched) {
+		Slice slice = currentSlice();
+		slice.counts.incrementAndGet(bucketOf(nanos));
+		slice.count.incrementAndGet();
+		if (mismatched) {
+			slice.mismatches.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Record a run that timed out, which counts as a run but has no latency.
+	 * 
+	 * @param mismatched
+	 *           whether the recorded candidate mismatched
+	 */
+	void recordTimeout(boolean mismatched) {
+		Slice slice = currentSlice();
+		slice.count.incrementAndGet();
+		slice.timeouts.incrementAndGet();
+		if (mismatched) {
+			slice.mismatches.incrementAndGet();
+		}
+	}
+
+	/** Sum the slices that are inside the window. */
+	HistogramSnapshot snapshot() {
+		long epoch = Math.floorDiv(ticker.read(), sliceNanos);
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		long mismatches = 0;
+		long timeouts = 0;
+		for (Slice slice : slices) {
+			long sliceEpoch = slice.epoch.get();
+			if (sliceEpoch > epoch || epoch - sliceEpoch >= slices.length) {
+				continue;
+			}
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] += slice.counts.get(i);
+			}
+			count += slice.count.get();
+			mismatches += slice.mismatches.get();
+			timeouts += slice.timeouts.get();
+		}
+		return new HistogramSnapshot(counts, count, mismatches, timeouts);
+	}
+
+	/** Gets the slice of the current time, clearing it if it is reused. */
+	private Slice currentSlice() {
+		long epoch = Math.floorDiv(ticker.read(), sliceNanos);
+		// System.nanoTime() may be negative
+		Slice slice = slices[(int) Math.floorMod(epoch, (long) slices.length)];
+		long current = slice.epoch.get();
+		if (current != epoch && slice.epoch.compareAndSet(current, epoch)) {
+			slice.clear();
+		}
+		return slice;
+	}
+
+	/** Gets the bucket counting a latency. */
+	static int bucketOf(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAXIMUM_NANOS);
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> exponent) - SUB_BUCKETS;
+		return (exponent + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/** Gets the latency in the middle of a bucket. */
+	static long valueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << exponent;
+		return lowest + ((1L << exponent) >>> 1);
+	}
+
+	/** The counts of one slice of the window. */
+	private static final class Slice {
+		private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong mismatches = new AtomicLong();
+		private final AtomicLong timeouts = new AtomicLong();
+
+		private void clear() {
+			for (int i = 0; i < BUCKETS; i++) {
+				counts.set(i, 0);
+			}
+			count.set(0);
+			mismatches.set(0);
+			timeouts.set(0);
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package dk.darknight.scientist;
+
+import java.lang.ref.Cleaner;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.BaseStream;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs an experiment whose behaviors return sequences, comparing them element
+ * by element as the caller consumes the control's sequence.
+ * <p>
+ * The caller gets the control's elements unchanged. Each candidate consumes its
+ * own sequence on its worker thread, and is handed the control's elements
+ * through a bounded buffer as the caller consumes them, so neither sequence is
+ * held in memory. A candidate that falls more than {@link #BUFFER_SIZE}
+ * elements behind is given {@link #CATCH_UP_MILLIS} to catch up, and is then
+ * dropped rather than slowing the caller down further, and reported as having
+ * thrown. The result is published once the caller has
+ * consumed the control's sequence, so a sequence that is never consumed to the
+ * end is never published.
+ * </p>
+ * <p>
+ * Every candidate holds a worker for as long as the caller consumes the
+ * control, so candidates are never throttled, the control is opened on the
+ * calling thread, and the timeout of a candidate covers the time the caller
+ * takes to consume the control. Unless the experiment has its own executor,
+ * candidates run on {@link #LANE_EXECUTOR} rather than the shared experiment
+ * executor, and a candidate that finds no free worker is left out of the
+ * result instead of waiting for one. A comparison is used for a single run.
+ * </p>
+ * <p>
+ * The caller's iterator is {@link AutoCloseable}. Closing it, or dropping it
+ * to the garbage collector, before it is exhausted releases the candidates
+ * without publishing.
+ * </p>
+ *
+ * @param <T>
+ *           The return type of the experiment
+ * @param <E>
+ *           The type of the elements
+ * @param <TClean>
+ *           The cleaned type of the experiment
+ */
+final class StreamingComparison<T, E, TClean> implements IDiffComparator<T> {
+	/** The number of elements a candidate may fall behind the control. */
+	static final int BUFFER_SIZE = 1024;
+
+	/** How long the caller waits for a candidate that has fallen behind, once. */
+	static final long CATCH_UP_MILLIS = 10;
+
+	/** Compares elements with {@link Object#equals(Object)}. */
+	static final Comparator<Object> EQUALITY = new Comparator<Object>() {
+		@Override
+		public int compare(Object o1, Object o2) {
+			return Objects.equals(o1, o2) ? 0 : -1;
+		}
+	};
+
+	/**
+	 * The executor candidates run on unless the experiment has its own. It
+	 * queues nothing, so a candidate is rejected when all its workers are busy.
+	 */
+	static final ExperimentExecutor LANE_EXECUTOR = new ExperimentExecutor(
+			Math.max(ExperimentExecutor.MINIMUM_DEFAULT_CONCURRENCY, Runtime.getRuntime().availableProcessors()), 0,
+			new ThreadFactoryBuilder().setNameFormat("scientist-stream-%d").setDaemon(true).build());
+
+	/** Abandons the comparisons whose iterators were dropped before they were exhausted. */
+	private static final Cleaner CLEANER = Cleaner
+			.create(new ThreadFactoryBuilder().setNameFormat("scientist-stream-cleaner-%d").setDaemon(true).build());
+
+	private static final Object NULL = new Object();
+	private static final Object END = new Object();
+	private static final Object ABANDONED = new Object();
+
+	private final Function<T, Iterator<E>> elements;
+	private final Comparator<? super E> comparator;
+	private final Map<String, Lane> lanes = new HashMap<>();
+	private final Instance instance;
+	private final AtomicBoolean finished = new AtomicBoolean();
+	private Publication<T, TClean> publication;
+
+	/** Abandons the comparison, without referring to the iterator it is registered for. */
+	private final Runnable abandonment = new Runnable() {
+		@Override
+		public void run() {
+			abandon();
+		}
+	};
+
+	/**
+	 * Create a comparison.
+	 *
+	 * @param settings
+	 *           the settings of the experiment
+	 * @param elements
+	 *           gets the elements of the value of a behavior
+	 * @param comparator
+	 *           compares elements. If it is an {@link IDiffComparator}, the
+	 *           path of its difference is prefixed with the index of the
+	 *           element
+	 */
+	StreamingComparison(ExperimentSettings<T, TClean, Function<Object, T>> settings,
+			Function<T, Iterator<E>> elements, Comparator<? super E> comparator) {
+		this.elements = elements;
+		this.comparator = comparator;
+
+		Map<String, Function<Object, T>> candidates = new HashMap<>();
+		for (Map.Entry<String, Function<Object, T>> entry : settings.getCandidates().entrySet()) {
+			Lane lane = new Lane(entry.getValue());
+			lanes.put(entry.getKey(), lane);
+			candidates.put(entry.getKey(), lane);
+		}
+		settings.setCandidates(candidates);
+		if (settings.getExecutor() == null) {
+			settings.setExecutor(LANE_EXECUTOR);
+		}
+		settings.setComparator(this);
+		settings.setConcurrentTasks(Math.max(settings.getConcurrentTasks(), candidates.size()));
+		if (settings.getExecutionMode() == ExecutionMode.CONCURRENT) {
+			settings.setExecutionMode(ExecutionMode.CONTROL_INLINE);
+		}
+		instance = new Instance(settings);
+	}
+
+	/**
+	 * Run the experiment, starting the candidates.
+	 *
+	 * @return the value of the control
+	 */
+	T run() {
+		T control;
+		try {
+			control = instance.run(null);
+		} catch (RuntimeException e) {
+			abandon();
+			throw e;
+		}
+
+		// Stop feeding candidates that found no free worker
+		if (publication != null) {
+			for (String name : publication.getCancelledNames()) {
+				Lane lane = lanes.get(name);
+				if (lane != null) {
+					lane.abandon(false);
+				}
+			}
+		}
+		return control;
+	}
+
+	/**
+	 * Gets the elements of the control, which are compared with the candidates
+	 * as they are consumed.
+	 *
+	 * @param control
+	 *           the value returned by {@link #run()}
+	 */
+	Iterator<E> iterator(T control) {
+		Iterator<E> iterator = elements.apply(control);
+		return isComparing() ? new ComparingIterator(iterator) : iterator;
+	}
+
+	/** Gets whether the candidates ran, so the control's elements are compared. */
+	boolean isComparing() {
+		return publication != null;
+	}
+
+	/** Stop comparing without publishing, e.g. when the caller closes the control early. */
+	void abandon() {
+		if (!finished.compareAndSet(false, true)) {
+			return;
+		}
+		for (Lane lane : lanes.values()) {
+			lane.abandon(false);
+		}
+	}
+
+	/** Gets the difference recorded by the candidate that returned a value. */
+	@Override
+	public Difference diff(T control, T candidate) {
+		for (Lane lane : lanes.values()) {
+			if (lane.value == candidate) {
+				return lane.difference;
+			}
+		}
+		return null;
+	}
+
+	/** Hand an element of the control to the candidates that are still comparing. */
+	private void feed(Object element) {
+		for (Lane lane : lanes.values()) {
+			if (!lane.closed && !lane.buffer.offer(element) && !catchUp(lane, element)) {
+				lane.abandon(true);
+			}
+		}
+	}
+
+	/** Give a candidate that has fallen behind a moment to take an element. */
+	private boolean catchUp(Lane lane, Object element) {
+		try {
+			return lane.buffer.offer(element, CATCH_UP_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/** The control's sequence ended, so let the candidates finish and publish. */
+	private void finish() {
+		if (!finished.compareAndSet(false, true)) {
+			return;
+		}
+		feed(END);
+		instance.publishDeferred();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Difference diff(int index, E control, E candidate) {
+		String path = "[" + index + "]";
+		if (comparator instanceof IDiffComparator) {
+			Difference d = ((IDiffComparator<E>) comparator).diff(control, candidate);
+			return d == null ? null : new Difference(path + d.getPath(), d.getReason(), d.getControl(), d.getCandidate());
+		}
+		return comparator.compare(control, candidate) == 0 ? null
+				: new Difference(path, "values differ", control, candidate);
+	}
+
+	/** A candidate, which compares its sequence with the control's as it runs. */
+	private final class Lane implements Function<Object, T> {
+		private final Function<Object, T> block;
+		private final BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+		/** Whether the lane takes no more elements. */
+		private volatile boolean closed;
+		private volatile boolean fellBehind;
+		private volatile T value;
+		private volatile Difference difference;
+
+		private Lane(Function<Object, T> block) {
+			this.block = block;
+		}
+
+		@Override
+		public T apply(Object input) {
+			T v = block.apply(input);
+			value = v;
+			try {
+				compare(elements.apply(v));
+			} finally {
+				closed = true;
+				buffer.clear();
+				if (v instanceof BaseStream) {
+					((BaseStream<?, ?>) v).close();
+				}
+			}
+			return v;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void compare(Iterator<E> candidate) {
+			for (int index = 0;; index++) {
+				Object next;
+				try {
+					next = buffer.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("The candidate was cancelled while comparing");
+				}
+
+				if (next == ABANDONED) {
+					if (fellBehind) {
+						throw new IllegalStateException(
+								"The candidate fell more than " + BUFFER_SIZE + " elements behind the control");
+					}
+					return;
+				}
+				if (next == END) {
+					if (candidate.hasNext()) {
+						difference = new Difference("[" + index + "]", "unexpected element", null, candidate.next());
+					}
+					return;
+				}
+
+				E expected = next == NULL ? null : (E) next;
+				if (!candidate.hasNext()) {
+					difference = new Difference("[" + index + "]", "missing element", expected, null);
+					return;
+				}
+				difference = diff(index, expected, candidate.next());
+				if (difference != null) {
+					return;
+				}
+			}
+		}
+
+		/** Stop handing elements to the lane. */
+		private void abandon(boolean fellBehind) {
+			this.fellBehind = fellBehind;
+			closed = true;
+			buffer.clear();
+			buffer.offer(ABANDONED);
+		}
+	}
+
+	/**
+	 * The control's elements, handed to the candidates as they are consumed.
+	 * Closing it before it is exhausted abandons the comparison.
+	 */
+	private final class ComparingIterator implements Iterator<E>, AutoCloseable {
+		private final Iterator<E> control;
+		private final Cleaner.Cleanable cleanable;
+
+		private ComparingIterator(Iterator<E> control) {
+			this.control = control;
+			this.cleanable = CLEANER.register(this, abandonment);
+		}
+
+		@Override
+		public void close() {
+			cleanable.clean();
+		}
+
+		@Override
+		public boolean hasNext() {
+			boolean hasNext;
+			try {
+				hasNext = control.hasNext();
+			} catch (RuntimeException e) {
+				abandon();
+				throw e;
+			}
+			if (!hasNext) {
+				finish();
+			}
+			return hasNext;
+		}
+
+		@Override
+		public E next() {
+			E element;
+			try {
+				element = control.next();
+			} catch (RuntimeException e) {
+				abandon();
+				throw e;
+			}
+			feed(element == null ? NULL : element);
+			return element;
+		}
+
+		@Override
+		public void remove() {
+			control.remove();
+		}
+	}
+
+	/** The experiment instance, which leaves publishing to the comparison. */
+	private final class Instance extends ExperimentInstance<Object, T, TClean> {
+		private Instance(ExperimentSettings<T, TClean, Function<Object, T>> settings) {
+			super(settings);
+		}
+
+		@Override
+		protected void publish(Publication<T, TClean> publication) {
+			StreamingComparison.this.publication = publication;
+		}
+
+		private void publishDeferred() {
+			super.publish(publication);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package dk.darknight.scientist;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+
+import lombok.Builder;
+
+/**
+ * A comparator that walks collections, maps and arrays, and stops at the
+ * first difference.
+ * <p>
+ * Sizes are compared before elements, so results of different sizes are
+ * rejected without looking at their elements. Other values are compared with
+ * {@link Object#equals(Object)}, after comparing their hash codes unless
+ * disabled, which rejects most differing strings and value objects without a
+ * full comparison. Sets are always compared without regard to order, and other
+ * collections can be too, in which case their elements are compared by
+ * equality rather than walked.
+ * </p>
+ * <p>
+ * The difference found records the path to the differing element. Paths are
+ * bounded: below the maximum depth, elements are compared as a whole.
+ * </p>
+ *
+ * <pre>
+ * experiment.compare(StructuralComparator.&lt;List&lt;Order&gt;&gt; builder().ignoreOrder(true).build());
+ * </pre>
+ *
+ * @param <T>
+ *           The return type of the experiment
+ */
+public final class StructuralComparator<T> implements IDiffComparator<T> {
+	private static final int MAXIMUM_KEY_LENGTH = 32;
+	private static final String ELLIPSIS = "...";
+
+	private final boolean ignoreOrder;
+	private final boolean hashFirst;
+	private final int maximumDepth;
+
+	/** Builds comparators. By default order matters, hash codes are compared first and the depth is 16. */
+	public static class StructuralComparatorBuilder<T> {
+		private boolean hashFirst = true;
+		private int maximumDepth = 16;
+	}
+
+	@Builder
+	private StructuralComparator(boolean ignoreOrder, boolean hashFirst, int maximumDepth) {
+		Preconditions.checkArgument(maximumDepth >= 0, "maximumDepth must not be negative");
+		this.ignoreOrder = ignoreOrder;
+		this.hashFirst = hashFirst;
+		this.maximumDepth = maximumDepth;
+	}
+
+	@Override
+	public Difference diff(T control, T candidate) {
+		return diff(new StringBuilder(), 0, control, candidate);
+	}
+
+	private Difference diff(StringBuilder path, int depth, Object control, Object candidate) {
+		if (control == candidate) {
+			return null;
+		}
+		if (control == null || candidate == null) {
+			return difference(path, "values differ", control, candidate);
+		}
+		if (depth >= maximumDepth) {
+			return Objects.deepEquals(control, candidate) ? null
+					: difference(path, "values differ", control, candidate);
+		}
+
+		if (control.getClass().isArray() && candidate.getClass().isArray()) {
+			return diffArrays(path, depth, control, candidate);
+		}
+		if (control instanceof Map && candidate instanceof Map) {
+			return diffMaps(path, depth, (Map<?, ?>) control, (Map<?, ?>) candidate);
+		}
+		if (control instanceof Set && candidate instanceof Set) {
+			return diffSets(path, (Set<?>) control, (Set<?>) candidate);
+		}
+		if (control instanceof Collection && candidate instanceof Collection) {
+			return ignoreOrder ? diffUnordered(path, (Collection<?>) control, (Collection<?>) candidate)
+					: diffOrdered(path, depth, (Collection<?>) control, (Collection<?>) candidate);
+		}
+		if (control instanceof Collection || candidate instanceof Collection || control instanceof Map
+				|| candidate instanceof Map) {
+			return difference(path, "types differ", control, candidate);
+		}
+
+		if (hashFirst && control.hashCode() != candidate.hashCode()) {
+			return difference(path, "values differ", control, candidate);
+		}
+		return control.equals(candidate) ? null : difference(path, "values differ", control, candidate);
+	}
+
+	private Difference diffArrays(StringBuilder path, int depth, Object control, Object candidate) {
+		int length = Array.getLength(control);
+		int candidateLength = Array.getLength(candidate);
+		if (length != candidateLength) {
+			return sizeDifference(path, length, candidateLength);
+		}
+		if (control.getClass().getComponentType().isPrimitive() && Objects.deepEquals(control, candidate)) {
+			return null;
+		}
+
+		int mark = path.length();
+		for (int i = 0; i < length; i++) {
+			path.append('[').append(i).append(']');
+			Difference d = diff(path, depth + 1, Array.get(control, i), Array.get(candidate, i));
+			if (d != null) {
+				return d;
+			}
+			path.setLength(mark);
+		}
+		return null;
+	}
+
+	private Difference diffMaps(StringBuilder path, int depth, Map<?, ?> control, Map<?, ?> candidate) {
+		if (control.size() != candidate.size()) {
+			return sizeDifference(path, control.size(), candidate.size());
+		}
+
+		int mark = path.length();
+		for (Map.Entry<?, ?> entry : control.entrySet()) {
+			appendKey(path, entry.getKey());
+			if (!candidate.containsKey(entry.getKey())) {
+				return difference(path, "missing key", entry.getValue(), null);
+			}
+			Difference d = diff(path, depth + 1, entry.getValue(), candidate.get(entry.getKey()));
+			if (d != null) {
+				return d;
+			}
+			path.setLength(mark);
+		}
+		return null;
+	}
+
+	private Difference diffSets(StringBuilder path, Set<?> control, Set<?> candidate) {
+		if (control.size() != candidate.size()) {
+			return sizeDifference(path, control.size(), candidate.size());
+		}
+
+		for (Object element : control) {
+			if (!candidate.contains(element)) {
+				return difference(path.append("[*]"), "missing element", element, null);
+			}
+		}
+		return null;
+	}
+
+	private Difference diffUnordered(StringBuilder path, Collection<?> control, Collection<?> candidate) {
+		if (control.size() != candidate.size()) {
+			return sizeDifference(path, control.size(), candidate.size());
+		}
+
+		Map<Object, Integer> remaining = new HashMap<>();
+		for (Object element : candidate) {
+			Integer count = remaining.get(element);
+			remaining.put(element, count == null ? 1 : count + 1);
+		}
+		for (Object element : control) {
+			Integer count = remaining.get(element);
+			if (count == null) {
+				return difference(path.append("[*]"), "missing element", element, null);
+			}
+			if (count == 1) {
+				remaining.remove(element);
+			} else {
+				remaining.put(element, count - 1);
+			}
+		}
+		return null;
+	}
+
+	private Difference diffOrdered(StringBuilder path, int depth, Collection<?> control, Collection<?> candidate) {
+		if (control.size() != candidate.size()) {
+			return sizeDifference(path, control.size(), candidate.size());
+		}
+
+		int mark = path.length();
+		Iterator<?> candidates = candidate.iterator();
+		int i = 0;
+		for (Object element : control) {
+			path.append('[').append(i++).append(']');
+			Difference d = diff(path, depth + 1, element, candidates.next());
+			if (d != null) {
+				return d;
+			}
+			path.setLength(mark);
+		}
+		return null;
+	}
+
+	private static void appendKey(StringBuilder path, Object key) {
+		String s = String.valueOf(key);
+		path.append('[');
+		if (s.length() > MAXIMUM_KEY_LENGTH) {
+			path.append(s, 0, MAXIMUM_KEY_LENGTH - ELLIPSIS.length()).append(ELLIPSIS);
+		} else {
+			path.append(s);
+		}
+		path.append(']');
+	}
+
+	private static Difference sizeDifference(StringBuilder path, int control, int candidate) {
+		return difference(path, "size " + control + " != " + candidate, null, null);
+	}
+
+	private static Difference difference(StringBuilder path, String reason, Object control, Object candidate) {
+		return new Difference(path.toString(), reason, control, candidate);
+	}
+}
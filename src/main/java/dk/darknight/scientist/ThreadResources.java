@@ -0,0 +1,47 @@
+package dk.darknight.scientist;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reads the CPU time and allocated bytes of the current thread, where the JVM
+ * supports it.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ThreadResources {
+	/** The value returned for resources that are not measured. */
+	static final long UNAVAILABLE = -1;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+	private static com.sun.management.ThreadMXBean allocations() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREADS;
+			if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+				return bean;
+			}
+		}
+		return null;
+	}
+
+	/** Gets the CPU time of the current thread in nanoseconds. */
+	static long cpuTimeNanos() {
+		if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+			return UNAVAILABLE;
+		}
+		return THREADS.getCurrentThreadCpuTime();
+	}
+
+	/** Gets the number of bytes allocated by the current thread. */
+	static long allocatedBytes() {
+		if (ALLOCATIONS == null) {
+			return UNAVAILABLE;
+		}
+		return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
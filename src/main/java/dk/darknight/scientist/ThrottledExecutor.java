@@ -0,0 +1,72 @@
+package dk.darknight.scientist;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor that limits the number of tasks a single experiment run has in
+ * flight on a shared executor.
+ * <p>
+ * Tasks beyond the limit are held back and handed to the shared executor as
+ * running tasks complete. Tasks that the shared executor rejects are cancelled
+ * if they are {@link Future}s, and dropped otherwise.
+ * </p>
+ */
+final class ThrottledExecutor implements Executor {
+	private final Executor delegate;
+	private final AtomicInteger permits;
+	private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+	ThrottledExecutor(Executor delegate, int concurrentTasks) {
+		this.delegate = delegate;
+		this.permits = new AtomicInteger(concurrentTasks);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		pending.add(command);
+		drain();
+	}
+
+	/** Hand pending tasks to the delegate for as long as there are permits. */
+	private void drain() {
+		while (!pending.isEmpty()) {
+			int available = permits.get();
+			if (available == 0) {
+				return;
+			}
+			if (!permits.compareAndSet(available, available - 1)) {
+				continue;
+			}
+
+			final Runnable next = pending.poll();
+			if (next == null) {
+				permits.incrementAndGet();
+				continue;
+			}
+
+			try {
+				delegate.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							next.run();
+						} finally {
+							permits.incrementAndGet();
+							drain();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				permits.incrementAndGet();
+				if (next instanceof Future) {
+					((Future<?>) next).cancel(false);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package dk.darknight.scientist;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * The timer that cancels candidates when their timeout expires.
+ * <p>
+ * A single daemon thread serves all experiments. Timeouts of candidates that
+ * complete in time are removed from the timer right away.
+ * </p>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class Timeouts {
+	private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+	private static ScheduledThreadPoolExecutor createTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+				new ThreadFactoryBuilder().setNameFormat("scientist-timeout-%d").setDaemon(true).build());
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	/**
+	 * Schedule an action.
+	 * 
+	 * @param action
+	 *           the action to run when the timeout expires
+	 * @param timeoutNanos
+	 *           the timeout in nanoseconds
+	 * @return the scheduled timeout, which should be cancelled if the timeout is
+	 *         no longer needed
+	 */
+	static ScheduledFuture<?> schedule(Runnable action, long timeoutNanos) {
+		return TIMER.schedule(action, timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/** Gets the number of timeouts waiting to expire. */
+	static int getPendingCount() {
+		return TIMER.getQueue().size();
+	}
+}
@@ -0,0 +1,136 @@
+package dk.darknight.scientist;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+import lombok.NonNull;
+
+/**
+ * An {@link IExperimentExecutor} that runs each behavior on its own virtual
+ * thread.
+ * <p>
+ * Virtual threads are cheap to block, so I/O bound candidates do not tie up
+ * platform threads and thousands of experiments can be in flight at once.
+ * Virtual threads require Java 21 or later. On older runtimes every call is
+ * delegated to a fallback executor, which defaults to
+ * {@link ExperimentExecutor#DEFAULT}.
+ * </p>
+ */
+public class VirtualThreadExperimentExecutor implements IExperimentExecutor {
+	private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactoryMethod();
+
+	private final ExecutorService virtualThreads;
+	private final IExperimentExecutor fallback;
+	private final int maximumConcurrency;
+	private final Semaphore permits;
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/** Create an executor without a concurrency limit. */
+	public VirtualThreadExperimentExecutor() {
+		this(Integer.MAX_VALUE, ExperimentExecutor.DEFAULT);
+	}
+
+	/**
+	 * Create an executor.
+	 *
+	 * @param maximumConcurrency
+	 *           the maximum number of behaviors running at the same time.
+	 *           Behaviors beyond the limit are rejected.
+	 * @param fallback
+	 *           the executor used when virtual threads are not supported
+	 */
+	public VirtualThreadExperimentExecutor(int maximumConcurrency, @NonNull IExperimentExecutor fallback) {
+		Preconditions.checkArgument(maximumConcurrency > 0, "maximumConcurrency must be greater than 0");
+		this.maximumConcurrency = maximumConcurrency;
+		this.permits = maximumConcurrency == Integer.MAX_VALUE ? null : new Semaphore(maximumConcurrency);
+		this.fallback = fallback;
+		this.virtualThreads = isSupported() ? newVirtualThreadPerTaskExecutor() : null;
+	}
+
+	private static Method findVirtualThreadFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/** Are virtual threads supported by the running JVM? */
+	public static boolean isSupported() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Unable to create a virtual thread executor", e);
+		}
+	}
+
+	@Override
+	public void execute(@NonNull final Runnable command) {
+		if (virtualThreads == null) {
+			fallback.execute(command);
+			return;
+		}
+
+		if (permits != null && !permits.tryAcquire()) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException("Experiment executor is saturated");
+		}
+
+		try {
+			virtualThreads.execute(new Runnable() {
+				@Override
+				public void run() {
+					active.incrementAndGet();
+					try {
+						command.run();
+					} finally {
+						active.decrementAndGet();
+						if (permits != null) {
+							permits.release();
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			if (permits != null) {
+				permits.release();
+			}
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	@Override
+	public int getActiveCount() {
+		return virtualThreads == null ? fallback.getActiveCount() : active.get();
+	}
+
+	@Override
+	public int getMaximumConcurrency() {
+		return virtualThreads == null ? fallback.getMaximumConcurrency() : maximumConcurrency;
+	}
+
+	/** Virtual threads start immediately, so only the fallback ever queues behaviors. */
+	@Override
+	public int getQueueDepth() {
+		return virtualThreads == null ? fallback.getQueueDepth() : 0;
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return virtualThreads == null ? fallback.getRejectedCount() : rejected.get();
+	}
+}
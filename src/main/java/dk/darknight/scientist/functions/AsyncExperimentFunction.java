@@ -0,0 +1,13 @@
+package dk.darknight.scientist.functions;
+
+import dk.darknight.scientist.IAsyncExperiment;
+
+/**
+ * Consumer that consumes an {@link IAsyncExperiment} instance.
+ * 
+ * @param <T>
+ *            the return type for the experiment.
+ */
+public interface AsyncExperimentFunction<T, TClean> {
+	 public void apply(IAsyncExperiment<T, TClean> input);
+}
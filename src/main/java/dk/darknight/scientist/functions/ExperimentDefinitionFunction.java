@@ -0,0 +1,15 @@
+package dk.darknight.scientist.functions;
+
+import dk.darknight.scientist.IExperimentDefinition;
+
+/**
+ * Consumer that consumes an {@link IExperimentDefinition} instance.
+ * 
+ * @param <I>
+ *            the input type for the experiment.
+ * @param <T>
+ *            the return type for the experiment.
+ */
+public interface ExperimentDefinitionFunction<I, T, TClean> {
+	 public void apply(IExperimentDefinition<I, T, TClean> input);
+}
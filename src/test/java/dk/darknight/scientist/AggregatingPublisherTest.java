@@ -0,0 +1,121 @@
+package dk.darknight.scientist;
+
+import static dk.darknight.scientist.TestResults.result;
+import static dk.darknight.scientist.TestResults.returning;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.base.Function;
+
+import dk.darknight.scientist.functions.DoubleFunction;
+
+public class AggregatingPublisherTest {
+	private static void publish(AggregatingPublisher publisher, int control, int candidate, boolean throwing) {
+		publisher.publish(result("aggregated experiment", returning("control", control),
+				throwing ? TestResults.<Integer>throwing("candidate", "No value") : returning("candidate", candidate)));
+	}
+
+	@Test
+	public void testFlush() {
+		ISummaryPublisher downstream = mock(ISummaryPublisher.class);
+		AggregatingPublisher publisher = new AggregatingPublisher(downstream, 1, TimeUnit.HOURS, 2);
+
+		for (int i = 0; i < 5; i++) {
+			publish(publisher, i, i, false);
+		}
+		for (int i = 0; i < 3; i++) {
+			publish(publisher, i, i + 1, false);
+		}
+		publish(publisher, 1, 1, true);
+		publisher.publishSkipped("aggregated experiment");
+
+		publisher.flush();
+		ExperimentSummary summary = summary(downstream);
+		assertEquals(9, summary.getRuns());
+		assertEquals(5, summary.getMatches());
+		assertEquals(4, summary.getMismatches());
+		assertEquals(1, summary.getSkipped());
+		assertEquals(2, summary.getMismatchSamples().size());
+
+		CandidateSummary candidate = summary.getCandidates().get("candidate");
+		assertEquals(9, candidate.getRuns());
+		assertEquals(5, candidate.getMatches());
+		assertEquals(4, candidate.getMismatches());
+		assertEquals(1, candidate.getExceptions());
+
+		// Nothing happened since the last flush
+		publisher.shutdown();
+		assertNull(summary(downstream));
+	}
+
+	@Test
+	public void testIgnoredRuns() {
+		ExperimentSettings<Integer, Integer, Function<Object, Integer>> settings = TestResults
+				.settings("aggregated experiment");
+		settings.getIgnores().add(new DoubleFunction<Integer, Integer, Boolean>() {
+			@Override
+			public Boolean apply(Integer control, Integer candidate) {
+				return candidate == 0;
+			}
+		});
+		ISummaryPublisher downstream = mock(ISummaryPublisher.class);
+		AggregatingPublisher publisher = new AggregatingPublisher(downstream, 1, TimeUnit.HOURS, 0);
+
+		publisher.publish(result(settings, Collections.<String, Object>emptyMap(), returning("control", 1),
+				returning("candidate", 1)));
+		publisher.publish(result(settings, Collections.<String, Object>emptyMap(), returning("control", 1),
+				returning("candidate", 0)));
+		publisher.publish(result(settings, Collections.<String, Object>emptyMap(), returning("control", 1),
+				returning("candidate", 0), returning("other", 2)));
+		publisher.publish(result(settings, Collections.<String, Object>emptyMap(), returning("control", 1),
+				returning("candidate", 2)));
+
+		publisher.flush();
+		ExperimentSummary summary = summary(downstream);
+		assertEquals(4, summary.getRuns());
+		assertEquals(1, summary.getMatches());
+		assertEquals(1, summary.getMismatches());
+		assertEquals(2, summary.getIgnored());
+		assertEquals(2, summary.getCandidates().get("candidate").getIgnored());
+		assertEquals(1, summary.getCandidates().get("other").getMismatches());
+		publisher.shutdown();
+	}
+
+	/**
+	 * Gets the summary of the experiment, ignoring results of earlier tests that
+	 * may still be published asynchronously.
+	 */
+	private static ExperimentSummary summary(ISummaryPublisher downstream) {
+		ArgumentCaptor<ExperimentSummary> summaries = ArgumentCaptor.forClass(ExperimentSummary.class);
+		verify(downstream, atLeast(0)).publish(summaries.capture());
+		ExperimentSummary found = null;
+		for (ExperimentSummary summary : summaries.getAllValues()) {
+			if (summary.getExperimentName().equals("aggregated experiment")) {
+				found = summary;
+			}
+		}
+		clearInvocations(downstream);
+		return found;
+	}
+
+	@Test
+	public void testScheduledFlush() throws Exception {
+		ISummaryPublisher downstream = mock(ISummaryPublisher.class);
+		AggregatingPublisher publisher = new AggregatingPublisher(downstream, 10, TimeUnit.MILLISECONDS, 0);
+		publish(publisher, 1, 2, false);
+		verify(downstream, timeout(1000).atLeastOnce()).publish(any(ExperimentSummary.class));
+		publisher.shutdown();
+	}
+}
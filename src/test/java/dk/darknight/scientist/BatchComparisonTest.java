@@ -0,0 +1,152 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+
+import dk.darknight.scientist.functions.DoubleAction;
+import dk.darknight.scientist.functions.ExperimentFunction;
+
+public class BatchComparisonTest {
+	private static Supplier<List<Integer>> prices(final int count, final int... wrong) {
+		return new Supplier<List<Integer>>() {
+			@Override
+			public List<Integer> get() {
+				List<Integer> prices = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					prices.add(i * 10);
+				}
+				for (int w : wrong) {
+					prices.set(w, -1);
+				}
+				return prices;
+			}
+		};
+	}
+
+	private static BatchResult<?, ?> mismatch(String name, final Supplier<List<Integer>> candidate) {
+		try {
+			Scientist.scienceBatch(name, new ExperimentFunction<List<Integer>, Object>() {
+				@Override
+				public void apply(IExperiment<List<Integer>, Object> experiment) {
+					experiment.use(prices(10000));
+					experiment.attempt(candidate);
+					experiment.setThrowOnMismatches(true);
+				}
+			});
+		} catch (MismatchException e) {
+			assertTrue(e.getResult() instanceof BatchResult);
+			return (BatchResult<?, ?>) e.getResult();
+		}
+		fail("The batch should mismatch");
+		return null;
+	}
+
+	@Test
+	public void testMatchingBatch() {
+		List<Integer> prices = Scientist.scienceBatch("matching batch",
+				new ExperimentFunction<List<Integer>, Object>() {
+					@Override
+					public void apply(IExperiment<List<Integer>, Object> experiment) {
+						experiment.use(prices(10000));
+						experiment.attempt(new Supplier<List<Integer>>() {
+							@Override
+							public List<Integer> get() {
+								return new LinkedList<>(prices(10000).get());
+							}
+						});
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		assertEquals(10000, prices.size());
+	}
+
+	@Test
+	public void testMismatchedIndices() {
+		BatchResult<?, ?> result = mismatch("mismatched batch", prices(10000, 3, 4711, 9999));
+
+		assertEquals(10000, result.getSize());
+		assertEquals(ImmutableList.of(3, 4711, 9999), result.getMismatchedIndices("candidate"));
+		Difference difference = result.getMismatchedObservations().get(0).getDifference();
+		assertEquals("[3]", difference.getPath());
+		assertEquals("3 of 10000 elements differ, first values differ", difference.getReason());
+	}
+
+	@Test
+	public void testShorterCandidate() {
+		BatchResult<?, ?> result = mismatch("shorter batch", prices(9998));
+
+		assertEquals(ImmutableList.of(9998, 9999), result.getMismatchedIndices("candidate"));
+		assertEquals("[9998]", result.getMismatchedObservations().get(0).getDifference().getPath());
+	}
+
+	@Test
+	public void testLongerCandidate() {
+		BatchResult<?, ?> result = mismatch("longer batch", prices(10002));
+
+		assertEquals(ImmutableList.of(10000, 10001), result.getMismatchedIndices("candidate"));
+		assertEquals("2 of 10002 elements differ, first unexpected element",
+				result.getMismatchedObservations().get(0).getDifference().getReason());
+	}
+
+	@Test
+	public void testThrowingComparator() {
+		final List<Operation> failures = new ArrayList<>();
+		try {
+			Scientist.scienceBatch("throwing comparator batch", new Comparator<Integer>() {
+				@Override
+				public int compare(Integer control, Integer candidate) {
+					if (candidate < 0) {
+						throw new IllegalArgumentException("Negative price");
+					}
+					return control.compareTo(candidate);
+				}
+			}, new ExperimentFunction<List<Integer>, Object>() {
+				@Override
+				public void apply(IExperiment<List<Integer>, Object> experiment) {
+					experiment.use(prices(10000));
+					experiment.attempt(prices(10000, 7, 5000));
+					experiment.thrown(new DoubleAction<Operation, Exception>() {
+						@Override
+						public Void apply(Operation operation, Exception exception) {
+							failures.add(operation);
+							return null;
+						}
+					});
+					experiment.setThrowOnMismatches(true);
+				}
+			});
+		} catch (MismatchException e) {
+			// The elements the comparator threw on differ, and the failure is reported
+			BatchResult<?, ?> result = (BatchResult<?, ?>) e.getResult();
+			assertEquals(ImmutableList.of(7, 5000), result.getMismatchedIndices("candidate"));
+			assertEquals(ImmutableList.of(Operation.COMPARE), failures);
+			return;
+		}
+		fail("The batch should mismatch");
+	}
+
+	@Test
+	public void testThrowingCandidate() {
+		BatchResult<?, ?> result = mismatch("throwing batch", new Supplier<List<Integer>>() {
+			@Override
+			public List<Integer> get() {
+				throw new IllegalStateException("No prices");
+			}
+		});
+
+		assertTrue(result.getMismatchedIndices("candidate").isEmpty());
+		assertEquals(1, result.getMismatchedObservations().size());
+	}
+}
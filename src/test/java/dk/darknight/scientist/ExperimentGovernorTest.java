@@ -0,0 +1,56 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ExperimentGovernorTest {
+	/** Admit runs until the sampling rate settles. */
+	private void settle(ExperimentGovernor governor, IExperimentExecutor executor) throws InterruptedException {
+		for (int i = 0; i < 20; i++) {
+			Thread.sleep(2);
+			governor.admit(executor);
+		}
+	}
+
+	@Test
+	public void testBackOffOnControlLatency() throws Exception {
+		ExperimentGovernor governor = ExperimentGovernor.builder().controlLatencyThresholdMillis(10)
+				.adjustmentIntervalMillis(1).build();
+
+		governor.recordControlLatency(TimeUnit.MILLISECONDS.toNanos(50));
+		settle(governor, null);
+
+		assertEquals(0, governor.getSamplingRate(), 0);
+		assertFalse(governor.admit(null));
+		assertTrue(governor.getSkippedCount() > 0);
+
+		for (int i = 0; i < 100; i++) {
+			governor.recordControlLatency(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		settle(governor, null);
+
+		assertEquals(1, governor.getSamplingRate(), 0);
+		assertTrue(governor.admit(null));
+	}
+
+	@Test
+	public void testBackOffOnQueueDepth() throws Exception {
+		ExperimentGovernor governor = ExperimentGovernor.builder().queueDepthThreshold(5)
+				.adjustmentIntervalMillis(1).build();
+		IExperimentExecutor executor = mock(IExperimentExecutor.class);
+		when(executor.getMaximumConcurrency()).thenReturn(4);
+		when(executor.getQueueDepth()).thenReturn(10);
+
+		settle(governor, executor);
+
+		assertEquals(0, governor.getSamplingRate(), 0);
+		assertFalse(governor.admit(executor));
+	}
+}
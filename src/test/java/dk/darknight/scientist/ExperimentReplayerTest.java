@@ -0,0 +1,216 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Function;
+
+import dk.darknight.scientist.functions.ExperimentDefinitionFunction;
+
+public class ExperimentReplayerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final Function<Integer, Integer> DOUBLE = new Function<Integer, Integer>() {
+		@Override
+		public Integer apply(Integer input) {
+			if (input < 0) {
+				throw new IllegalArgumentException("Negative input " + input);
+			}
+			return input * 2;
+		}
+	};
+
+	private static final IResultPublisher NOTHING = new IResultPublisher() {
+		@Override
+		public <T, TClean> void publish(Result<T, TClean> result) {
+		}
+	};
+
+	private static CompiledExperiment<Integer, Integer, Integer> compile(final ExperimentRecorder<Integer, Integer> recorder,
+			final Function<Integer, Integer> candidate) {
+		return Scientist.compile("replayed experiment", new ExperimentDefinitionFunction<Integer, Integer, Integer>() {
+			@Override
+			public void apply(IExperimentDefinition<Integer, Integer, Integer> definition) {
+				definition.use(DOUBLE);
+				definition.attempt(candidate);
+				definition.addContext("region", "eu");
+				if (recorder != null) {
+					definition.record(recorder);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void testRecordAndReplay() throws IOException, InterruptedException {
+		Path recording = folder.getRoot().toPath().resolve("runs.recording");
+		final AtomicInteger candidateRuns = new AtomicInteger();
+		Function<Integer, Integer> candidate = new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer input) {
+				candidateRuns.incrementAndGet();
+				if (input < 0) {
+					throw new IllegalArgumentException("Negative input " + input);
+				}
+				return input == 7 ? 0 : input * 2;
+			}
+		};
+
+		ExperimentRecorder<Integer, Integer> recorder = new ExperimentRecorder<>(recording, Codecs.<Integer>serializable(),
+				Codecs.<Integer>serializable());
+		CompiledExperiment<Integer, Integer, Integer> recorded = compile(recorder, candidate);
+		for (int i = 0; i < 50; i++) {
+			assertEquals(Integer.valueOf(i * 2), recorded.run(i));
+		}
+		try {
+			recorded.run(-1);
+			fail("The control's exception should be thrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+		recorder.close();
+		assertEquals(0, candidateRuns.get());
+		assertEquals(51, recorder.getRecordedCount());
+
+		final List<Result<?, ?>> results = Collections.synchronizedList(new ArrayList<Result<?, ?>>());
+		IResultPublisher publisher = new IResultPublisher() {
+			@Override
+			public <T, TClean> void publish(Result<T, TClean> result) {
+				results.add(result);
+			}
+		};
+		ExperimentReplayer<Integer, Integer, Integer> replayer = new ExperimentReplayer<>(compile(null, candidate),
+				Codecs.<Integer>serializable(), Codecs.<Integer>serializable());
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			assertEquals(51, replayer.replay(recording, pool, publisher));
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(51, candidateRuns.get());
+		assertEquals(51, results.size());
+		int mismatched = 0;
+		for (Result<?, ?> result : results) {
+			assertEquals("replayed experiment", result.getExperimentName());
+			assertEquals("eu", result.getContexts().get("region"));
+			if (result.isMismatched()) {
+				mismatched++;
+				assertEquals(14, result.getControl().getValue());
+				assertEquals(0, result.getMismatchedObservations().get(0).getValue());
+			}
+			if (result.getControl().isThrown()) {
+				assertTrue(result.getControl().getException() instanceof RecordedException);
+				assertTrue(result.isMatched());
+			}
+		}
+		assertEquals(1, mismatched);
+	}
+
+	@Test
+	public void testAppendAndSkipOtherExperiments() throws IOException, InterruptedException {
+		Path recording = folder.getRoot().toPath().resolve("shared.recording");
+		ExperimentRecorder<Integer, Integer> recorder = new ExperimentRecorder<>(recording, Codecs.<Integer>serializable(),
+				Codecs.<Integer>serializable());
+		compile(recorder, DOUBLE).run(1);
+		recorder.close();
+
+		recorder = new ExperimentRecorder<>(recording, Codecs.<Integer>serializable(), Codecs.<Integer>serializable());
+		final ExperimentRecorder<Integer, Integer> other = recorder;
+		Scientist.compile("other experiment", new ExperimentDefinitionFunction<Integer, Integer, Integer>() {
+			@Override
+			public void apply(IExperimentDefinition<Integer, Integer, Integer> definition) {
+				definition.use(DOUBLE);
+				definition.attempt(DOUBLE);
+				definition.record(other);
+			}
+		}).run(2);
+		recorder.close();
+		assertEquals(1, recorder.getRecordedCount());
+
+		final List<Result<?, ?>> results = Collections.synchronizedList(new ArrayList<Result<?, ?>>());
+		long replayed = new ExperimentReplayer<>(compile(null, DOUBLE), Codecs.<Integer>serializable(),
+				Codecs.<Integer>serializable()).replay(recording, ForkJoinPool.commonPool(), new IResultPublisher() {
+					@Override
+					public <T, TClean> void publish(Result<T, TClean> result) {
+						results.add(result);
+					}
+				});
+		assertEquals(1, replayed);
+		assertFalse(results.get(0).isMismatched());
+	}
+
+	@Test
+	public void testTruncateTornRecord() throws IOException, InterruptedException {
+		Path recording = folder.getRoot().toPath().resolve("torn.recording");
+		ExperimentRecorder<Integer, Integer> recorder = new ExperimentRecorder<>(recording, Codecs.<Integer>serializable(),
+				Codecs.<Integer>serializable());
+		compile(recorder, DOUBLE).run(1);
+		recorder.close();
+		long size = Files.size(recording);
+
+		// A record whose body was cut short by a crash
+		Files.write(recording, new byte[] { 0, 0, 0, 100, 1, 2, 3 }, StandardOpenOption.APPEND);
+		ExperimentReplayer<Integer, Integer, Integer> replayer = new ExperimentReplayer<>(compile(null, DOUBLE),
+				Codecs.<Integer>serializable(), Codecs.<Integer>serializable());
+		assertEquals(1, replayer.replay(recording, ForkJoinPool.commonPool(), NOTHING));
+
+		recorder = new ExperimentRecorder<>(recording, Codecs.<Integer>serializable(), Codecs.<Integer>serializable());
+		assertEquals(size, Files.size(recording));
+		compile(recorder, DOUBLE).run(2);
+		recorder.close();
+		assertEquals(2, replayer.replay(recording, ForkJoinPool.commonPool(), NOTHING));
+	}
+
+	@Test
+	public void testRejectsInvalidLengths() throws IOException {
+		ExperimentReplayer<Integer, Integer, Integer> replayer = new ExperimentReplayer<>(compile(null, DOUBLE),
+				Codecs.<Integer>serializable(), Codecs.<Integer>serializable());
+		for (int length : new int[] { -1, RecordingFormat.MAXIMUM_RECORD_BYTES + 1 }) {
+			Path recording = folder.newFile().toPath();
+			try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(recording))) {
+				out.writeInt(RecordingFormat.MAGIC);
+				out.writeInt(RecordingFormat.VERSION);
+				out.writeInt(length);
+			}
+
+			try {
+				replayer.replay(recording, ForkJoinPool.commonPool(), NOTHING);
+				fail("The length " + length + " should be rejected");
+			} catch (IOException e) {
+				// Expected
+			}
+			try {
+				new ExperimentRecorder<>(recording, Codecs.<Integer>serializable(), Codecs.<Integer>serializable());
+				fail("The length " + length + " should be rejected");
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsOtherFiles() throws IOException {
+		Path file = folder.newFile("not-a-recording").toPath();
+		Files.write(file, "hello world".getBytes());
+		new ExperimentRecorder<>(file, Codecs.utf8(), Codecs.utf8());
+	}
+}
@@ -0,0 +1,99 @@
+package dk.darknight.scientist;
+
+import static dk.darknight.scientist.TestResults.result;
+import static dk.darknight.scientist.TestResults.returning;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class FanOutPublisherTest {
+	private static void publish(FanOutPublisher publisher, String name) {
+		publisher.publish(result(name, returning("control", 1), returning("candidate", 1)));
+	}
+
+	private static void awaitCondition(FanOutPublisher publisher, String sink, long published, long failed)
+			throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			SinkStatistics statistics = publisher.getStatistics().get(sink);
+			if (statistics.getPublished() >= published && statistics.getFailed() >= failed) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		fail("Sink " + sink + " did not reach " + published + " published and " + failed + " failed: "
+				+ publisher.getStatistics().get(sink));
+	}
+
+	@Test
+	public void testSlowSinkDoesNotBlockOthers() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger fast = new AtomicInteger();
+		FanOutPublisher publisher = FanOutPublisher.builder().capacity(2).sink("slow", new IResultPublisher() {
+			@Override
+			public <T, TClean> void publish(Result<T, TClean> result) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}).sink("fast", new IResultPublisher() {
+			@Override
+			public <T, TClean> void publish(Result<T, TClean> result) {
+				fast.incrementAndGet();
+			}
+		}).build();
+
+		for (int i = 0; i < 10; i++) {
+			publish(publisher, "fan-out experiment");
+			// Let the fast sink keep up with its small queue
+			awaitCondition(publisher, "fast", i + 1, 0);
+		}
+		release.countDown();
+
+		assertEquals(10, fast.get());
+		SinkStatistics slow = publisher.getStatistics().get("slow");
+		// Up to one result is being published, two are queued and the rest are dropped
+		assertTrue(slow.getDropped() >= 7);
+		assertEquals(0, publisher.getStatistics().get("fast").getDropped());
+		publisher.shutdown();
+	}
+
+	@Test
+	public void testFailingSinkIsQuarantined() throws InterruptedException {
+		final AtomicInteger attempts = new AtomicInteger();
+		FanOutPublisher publisher = FanOutPublisher.builder().failureThreshold(3).initialBackoffMillis(60000)
+				.sink("failing", new IResultPublisher() {
+					@Override
+					public <T, TClean> void publish(Result<T, TClean> result) {
+						attempts.incrementAndGet();
+						throw new IllegalStateException("Sink is down");
+					}
+				}).build();
+
+		for (int i = 0; i < 3; i++) {
+			publish(publisher, "quarantine experiment");
+			awaitCondition(publisher, "failing", 0, i + 1);
+		}
+		assertTrue(publisher.getStatistics().get("failing").isQuarantinedNow());
+
+		for (int i = 0; i < 5; i++) {
+			publish(publisher, "quarantine experiment");
+		}
+		TimeUnit.MILLISECONDS.sleep(50);
+
+		SinkStatistics statistics = publisher.getStatistics().get("failing");
+		assertEquals(3, attempts.get());
+		assertEquals(3, statistics.getFailed());
+		assertEquals(5, statistics.getQuarantined());
+		assertFalse(statistics.getAverageLatencyNanos() < 0);
+		publisher.shutdown();
+	}
+}
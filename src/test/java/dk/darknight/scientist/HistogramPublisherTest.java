@@ -0,0 +1,139 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Ticker;
+
+import dk.darknight.scientist.functions.ExperimentFunction;
+
+public class HistogramPublisherTest {
+	/** A ticker that is moved by hand. */
+	private static class ManualTicker extends Ticker {
+		private long nanos;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+	@After
+	public void tearDown() {
+		Scientist.setResultPublisher(LogPublisher.DEFAULT);
+	}
+
+	@Test
+	public void testPercentiles() {
+		SlidingHistogram histogram = new SlidingHistogram(TimeUnit.MINUTES.toNanos(1), 6, new ManualTicker());
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i), i % 10 == 0);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(0.1, snapshot.getMismatchRate(), 0);
+		assertEquals(500_000, snapshot.getP50(), 500_000 * 0.04);
+		assertEquals(900_000, snapshot.getP90(), 900_000 * 0.04);
+		assertEquals(990_000, snapshot.getP99(), 990_000 * 0.04);
+		assertEquals(999_000, snapshot.getP999(), 999_000 * 0.04);
+	}
+
+	@Test
+	public void testSlidingWindow() {
+		ManualTicker ticker = new ManualTicker();
+		SlidingHistogram histogram = new SlidingHistogram(TimeUnit.SECONDS.toNanos(6), 6, ticker);
+		histogram.record(100, false);
+		ticker.nanos = TimeUnit.SECONDS.toNanos(3);
+		histogram.record(100, true);
+		assertEquals(2, histogram.snapshot().getCount());
+
+		ticker.nanos = TimeUnit.SECONDS.toNanos(7);
+		assertEquals(1, histogram.snapshot().getCount());
+		assertEquals(1, histogram.snapshot().getMismatches());
+
+		ticker.nanos = TimeUnit.SECONDS.toNanos(20);
+		assertEquals(0, histogram.snapshot().getCount());
+		assertEquals(0, histogram.snapshot().getP99());
+	}
+
+	@Test
+	public void testNegativeTicker() {
+		ManualTicker ticker = new ManualTicker();
+		ticker.nanos = -TimeUnit.SECONDS.toNanos(5);
+		SlidingHistogram histogram = new SlidingHistogram(TimeUnit.SECONDS.toNanos(6), 6, ticker);
+		histogram.record(100, false);
+		ticker.nanos = -TimeUnit.MILLISECONDS.toNanos(500);
+		histogram.record(100, true);
+		assertEquals(2, histogram.snapshot().getCount());
+
+		ticker.nanos = TimeUnit.MILLISECONDS.toNanos(1500);
+		assertEquals(1, histogram.snapshot().getCount());
+		assertEquals(1, histogram.snapshot().getMismatches());
+
+		ticker.nanos = TimeUnit.SECONDS.toNanos(6);
+		assertEquals(0, histogram.snapshot().getCount());
+	}
+
+	@Test
+	public void testTimeouts() {
+		SlidingHistogram histogram = new SlidingHistogram(TimeUnit.MINUTES.toNanos(1), 6, new ManualTicker());
+		for (int i = 0; i < 10; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(100), false);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.recordTimeout(true);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(20, snapshot.getCount());
+		assertEquals(10, snapshot.getTimeouts());
+		assertEquals(0.5, snapshot.getMismatchRate(), 0);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), snapshot.getP50(), TimeUnit.MILLISECONDS.toNanos(4));
+	}
+
+	@Test
+	public void testPublish() {
+		HistogramPublisher publisher = new HistogramPublisher();
+		Scientist.setResultPublisher(publisher);
+		assertNull(publisher.getSnapshot("histogram experiment"));
+
+		for (int i = 0; i < 10; i++) {
+			final int value = i;
+			Scientist.science("histogram experiment", new ExperimentFunction<Integer, Integer>() {
+				@Override
+				public void apply(IExperiment<Integer, Integer> experiment) {
+					experiment.use(Suppliers.ofInstance(value));
+					experiment.attempt("slow", new Supplier<Integer>() {
+						@Override
+						public Integer get() {
+							try {
+								Thread.sleep(5);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+							return value;
+						}
+					});
+					// Publish synchronously
+					experiment.setThrowOnMismatches(true);
+				}
+			});
+		}
+
+		ExperimentSnapshot snapshot = publisher.getSnapshot("histogram experiment");
+		assertEquals(10, snapshot.getControl().getCount());
+		assertEquals(10, snapshot.getCandidates().get("slow").getCount());
+		assertEquals(0, snapshot.getMismatchRate(), 0);
+		assertTrue(snapshot.getLatencyDelta("slow", 50) >= TimeUnit.MILLISECONDS.toNanos(4));
+		assertEquals(1, publisher.getSnapshots().size());
+	}
+}
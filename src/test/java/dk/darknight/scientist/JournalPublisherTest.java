@@ -0,0 +1,95 @@
+package dk.darknight.scientist;
+
+import static dk.darknight.scientist.TestResults.result;
+import static dk.darknight.scientist.TestResults.returning;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableMap;
+
+public class JournalPublisherTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void publish(JournalPublisher journal, String name, int control, int candidate) {
+		journal.publish(result(TestResults.<Integer>settings(name), ImmutableMap.<String, Object>of("user", "jdoe"),
+				returning("control", control), returning("new", candidate),
+				TestResults.<Integer>throwing("failing", "No value for " + control)));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException, InterruptedException {
+		Path directory = folder.getRoot().toPath();
+		JournalPublisher journal = new JournalPublisher(directory);
+
+		long before = System.currentTimeMillis();
+		publish(journal, "journal experiment", 1, 2);
+		publish(journal, "other journal experiment", 3, 3);
+		journal.close();
+		long after = System.currentTimeMillis() + 1;
+
+		JournalReader reader = new JournalReader(directory);
+		List<JournalEntry> entries = reader.read("journal experiment", before, after);
+		assertEquals(1, entries.size());
+		JournalEntry entry = entries.get(0);
+		assertEquals("jdoe", entry.getContexts().get("user"));
+		assertEquals(3, entry.getObservations().size());
+		for (JournalObservation o : entry.getObservations()) {
+			if (o.getName().equals("control")) {
+				assertTrue(o.isControl());
+				assertEquals("1", o.getValue());
+			} else if (o.getName().equals("new")) {
+				assertTrue(o.isMismatched());
+				assertEquals("2", o.getValue());
+			} else {
+				assertTrue(o.isThrown());
+				assertNull(o.getValue());
+				assertEquals(IllegalStateException.class.getName(), o.getExceptionClass());
+				assertEquals("No value for 1", o.getExceptionMessage());
+			}
+			assertTrue(o.getDurationNanos() >= 0);
+		}
+
+		// The other experiment mismatched only through its failing candidate
+		assertEquals(1, reader.read("other journal experiment", before, after).size());
+		assertTrue(reader.read("journal experiment", after, Long.MAX_VALUE).isEmpty());
+		assertEquals(0, journal.getFailedCount());
+	}
+
+	@Test
+	public void testSegmentsRotate() throws IOException, InterruptedException {
+		Path directory = folder.getRoot().toPath();
+		JournalPublisher journal = new JournalPublisher(directory, 512, 2, 1024);
+
+		for (int i = 0; i < 50; i++) {
+			publish(journal, "rotating experiment", i, -i);
+		}
+		journal.close();
+
+		assertEquals(2, JournalFormat.segments(directory).size());
+		List<JournalEntry> entries = new JournalReader(directory).read("rotating experiment", 0, Long.MAX_VALUE);
+		assertFalse(entries.isEmpty());
+		assertTrue(entries.size() < 50);
+		// The newest entries are kept, in order
+		assertEquals("No value for 49", findFailing(entries.get(entries.size() - 1)).getExceptionMessage());
+	}
+
+	private static JournalObservation findFailing(JournalEntry entry) {
+		for (JournalObservation o : entry.getObservations()) {
+			if (o.isThrown()) {
+				return o;
+			}
+		}
+		return null;
+	}
+}
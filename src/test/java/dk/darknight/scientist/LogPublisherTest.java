@@ -0,0 +1,80 @@
+package dk.darknight.scientist;
+
+import static dk.darknight.scientist.TestResults.result;
+import static dk.darknight.scientist.TestResults.returning;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+
+import com.google.common.base.Function;
+import com.google.common.base.Suppliers;
+
+public class LogPublisherTest {
+	private static List<String> lines(LogFormat format, String name) {
+		Logger log = mock(Logger.class);
+		when(log.isInfoEnabled()).thenReturn(true);
+		new LogPublisher(log, null, format).publish(result(name, returning("control", "a \"quoted\"\nvalue"),
+				returning("new path", "b")));
+
+		ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+		verify(log, times(2)).info(lines.capture());
+		return lines.getAllValues();
+	}
+
+	@Test
+	public void testKeyValueFormat() {
+		List<String> lines = lines(LogFormat.KEY_VALUE, "key value experiment");
+
+		String run = lines.get(0);
+		assertTrue(run, run.matches("experiment=\"key value experiment\" run=\"[0-9a-f]+-[0-9a-f]+\" event=\"run\""
+				+ "( duration_ms\\.(control|new_path)=\\d+){2}"));
+		String mismatch = lines.get(1);
+		assertTrue(mismatch, mismatch.contains(" event=\"mismatch\" candidate=\"new path\" description=\"returned 'b'; "
+				+ "expected  'a \\\"quoted\\\"\\nvalue'\""));
+		// Both lines carry the same run ID
+		assertEquals(run.split(" ")[2], mismatch.split(" ")[2]);
+	}
+
+	@Test
+	public void testJsonFormat() {
+		List<String> lines = lines(LogFormat.JSON, "json experiment");
+
+		assertTrue(lines.get(0), lines.get(0).matches("\\{\"experiment\":\"json experiment\",\"run\":\"[0-9a-f-]+\","
+				+ "\"event\":\"run\",\"duration_ms\":\\{\"(control|new path)\":\\d+,\"(control|new path)\":\\d+\\}\\}"));
+		assertTrue(lines.get(1), lines.get(1).endsWith(",\"event\":\"mismatch\",\"candidate\":\"new path\","
+				+ "\"description\":\"returned 'b'; expected  'a \\\"quoted\\\"\\nvalue'\"}"));
+	}
+
+	@Test
+	public void testNothingIsFormattedWhenDisabled() {
+		Logger log = mock(Logger.class);
+		final AtomicInteger cleanings = new AtomicInteger();
+		Function<String, String> cleaner = new Function<String, String>() {
+			@Override
+			public String apply(String value) {
+				cleanings.incrementAndGet();
+				return value;
+			}
+		};
+
+		new LogPublisher(log).publish(result("disabled log experiment",
+				Observation.of("control", Suppliers.ofInstance("a"), TestResults.RETHROW, cleaner),
+				Observation.of("candidate", Suppliers.ofInstance("b"), TestResults.RETHROW, cleaner)));
+
+		verify(log, atLeastOnce()).isInfoEnabled();
+		verifyNoMoreInteractions(log);
+		assertEquals(0, cleanings.get());
+	}
+}
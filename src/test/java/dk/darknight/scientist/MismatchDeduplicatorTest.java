@@ -0,0 +1,159 @@
+package dk.darknight.scientist;
+
+import static dk.darknight.scientist.TestResults.result;
+import static dk.darknight.scientist.TestResults.returning;
+import static dk.darknight.scientist.TestResults.throwing;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class MismatchDeduplicatorTest {
+	@Test
+	public void testFingerprint() {
+		Observation<Integer, Integer> control = returning("control", 1);
+		long fingerprint = MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", 2));
+
+		assertEquals(fingerprint, MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", 2)));
+		assertNotEquals(fingerprint, MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", 3)));
+		assertNotEquals(fingerprint, MismatchDeduplicator.fingerprint("experiment", control, returning("other", 2)));
+		assertEquals(MismatchDeduplicator.fingerprint("experiment", control, throwing("candidate", "a")),
+				MismatchDeduplicator.fingerprint("experiment", control, throwing("candidate", "a")));
+		assertNotEquals(MismatchDeduplicator.fingerprint("experiment", control, throwing("candidate", "a")),
+				MismatchDeduplicator.fingerprint("experiment", control, throwing("candidate", "b")));
+	}
+
+	@Test
+	public void testFingerprintOfValuesWithoutEquality() {
+		Observation<int[], int[]> control = returning("control", new int[] { 0 });
+		assertEquals(MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", new int[] { 1, 2 })),
+				MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", new int[] { 1, 2 })));
+		assertNotEquals(
+				MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", new int[] { 1, 2 })),
+				MismatchDeduplicator.fingerprint("experiment", control, returning("candidate", new int[] { 1, 3 })));
+
+		// Objects without hashCode() or toString() are told apart by their class only
+		assertEquals(MismatchDeduplicator.fingerprint("experiment", returning("control", new Object()),
+				returning("candidate", new Object())),
+				MismatchDeduplicator.fingerprint("experiment", returning("control", new Object()),
+						returning("candidate", new Object())));
+		assertEquals(differenceFingerprint(new Object(), new Object()),
+				differenceFingerprint(new Object(), new Object()));
+	}
+
+	@Test
+	public void testDifferenceFingerprint() {
+		// The values at the difference tell mismatches at the same path apart
+		assertEquals(differenceFingerprint(42, 43), differenceFingerprint(42, 43));
+		assertNotEquals(differenceFingerprint(42, 43), differenceFingerprint(1, 7));
+		assertNotEquals(differenceFingerprint(Collections.singletonList(1), Collections.singletonList(2)),
+				differenceFingerprint(Collections.singletonList(1), Collections.singletonList(3)));
+
+		// Batches of different sizes with the same differing element collapse
+		Observation<List<Integer>, List<Integer>> control = returning("control", Arrays.asList(1, 2, 3));
+		assertEquals(batchFingerprint(control, Arrays.asList(1, 5, 3), 1),
+				batchFingerprint(returning("control", Arrays.asList(1, 2, 3, 4)), Arrays.asList(1, 5, 3, 4), 1));
+		assertNotEquals(batchFingerprint(control, Arrays.asList(1, 5, 3), 1),
+				batchFingerprint(control, Arrays.asList(1, 6, 3), 1));
+	}
+
+	private static <T> long differenceFingerprint(T controlValue, T candidateValue) {
+		Observation<T, T> control = returning("control", controlValue);
+		Observation<T, T> candidate = returning("candidate", candidateValue);
+		assertFalse(candidate.equivalentTo(control, StructuralComparator.<T>builder().build()));
+		return MismatchDeduplicator.fingerprint("experiment", control, candidate);
+	}
+
+	private static long batchFingerprint(Observation<List<Integer>, List<Integer>> control,
+			List<Integer> candidateValue, int mismatches) {
+		BatchComparison<Integer, List<Integer>> comparison = new BatchComparison<>(
+				TestResults.<List<Integer>>settings("batch"), Ordering.<Integer>natural());
+		Observation<List<Integer>, List<Integer>> candidate = returning("candidate", candidateValue);
+		assertFalse(candidate.equivalentTo(control, comparison));
+		assertEquals(mismatches, comparison.getMismatchedIndices(candidateValue).length);
+		return MismatchDeduplicator.fingerprint("batch", control, candidate);
+	}
+
+	@Test
+	public void testBoundedRecords() {
+		MismatchDeduplicator deduplicator = new MismatchDeduplicator(2);
+		Observation<Integer, Integer> control = returning("control", 0);
+		for (int i = 0; i < 5; i++) {
+			deduplicator.record("experiment", control, returning("candidate", 1));
+		}
+		MismatchRecord record = deduplicator.getMismatches().get(0);
+		assertEquals(5, record.getCount());
+		assertEquals("returned '1'; expected  '0'", record.getExample());
+
+		for (int i = 2; i < 10; i++) {
+			deduplicator.record("experiment", control, returning("candidate", i));
+		}
+		assertEquals(2, deduplicator.getMismatches().size());
+		assertEquals(7, deduplicator.getEvictedCount());
+	}
+
+	@Test
+	public void testLogPublisher() {
+		Logger log = mock(Logger.class);
+		when(log.isInfoEnabled()).thenReturn(true);
+		LogPublisher publisher = new LogPublisher(log, new MismatchDeduplicator());
+
+		for (int i = 0; i < 20; i++) {
+			publisher.publish(result("deduplicated experiment", returning("control", 1),
+					returning("candidate", 2)));
+		}
+
+		// 20 duration lines, and the mismatch when seen once and ten times
+		verify(log, times(20)).info(anyString(), eq("deduplicated experiment"), anyString(), anyString());
+		verify(log, times(2)).info(anyString(), eq("deduplicated experiment"), anyString(), anyString(), any(),
+				eq("candidate"), anyString());
+	}
+
+	@Test
+	public void testConcurrentLogPublisher() throws Exception {
+		Logger log = mock(Logger.class);
+		when(log.isInfoEnabled()).thenReturn(true);
+		final LogPublisher publisher = new LogPublisher(log, new MismatchDeduplicator());
+		final CountDownLatch start = new CountDownLatch(1);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Uninterruptibles.awaitUninterruptibly(start);
+					for (int i = 0; i < 250; i++) {
+						publisher.publish(result("deduplicated experiment", returning("control", 1),
+								returning("candidate", 2)));
+					}
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// The mismatch when seen 1, 10, 100 and 1000 times, whichever thread saw it
+		verify(log, times(4)).info(anyString(), eq("deduplicated experiment"), anyString(), anyString(), any(),
+				eq("candidate"), anyString());
+	}
+}
@@ -0,0 +1,46 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class OrderingPolicyTest {
+	private static int[] order(OrderingPolicy policy, int behaviors) {
+		long seed = policy.seed(behaviors);
+		int[] order = new int[behaviors];
+		for (int i = 0; i < behaviors; i++) {
+			order[i] = policy.behaviorAt(i, behaviors, seed);
+		}
+		return order;
+	}
+
+	@Test
+	public void testRandomIsPermutation() {
+		for (int behaviors = 1; behaviors <= 12; behaviors++) {
+			BitSet first = new BitSet();
+			for (int run = 0; run < 200; run++) {
+				int[] order = order(OrderingPolicy.RANDOM, behaviors);
+				BitSet seen = new BitSet();
+				for (int b : order) {
+					seen.set(b);
+				}
+				assertEquals(behaviors, seen.cardinality());
+				assertEquals(behaviors, seen.length());
+				first.set(order[0]);
+			}
+			// Every behavior, the control included, is sometimes started first
+			assertEquals(behaviors, first.cardinality());
+		}
+	}
+
+	@Test
+	public void testFixedOrders() {
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, order(OrderingPolicy.CONTROL_FIRST, 4));
+		assertArrayEquals(new int[] { 1, 2, 3, 0 }, order(OrderingPolicy.CANDIDATES_FIRST, 4));
+		assertTrue(order(OrderingPolicy.CANDIDATES_FIRST, 1)[0] == 0);
+	}
+}
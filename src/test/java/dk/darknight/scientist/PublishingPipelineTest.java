@@ -0,0 +1,218 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+import dk.darknight.scientist.functions.DoubleAction;
+import dk.darknight.scientist.functions.ExperimentFunction;
+
+public class PublishingPipelineTest {
+	@After
+	public void tearDown() {
+		Scientist.setPublishingPipeline(PublishingPipeline.DEFAULT);
+		Scientist.setResultPublisher(LogPublisher.DEFAULT);
+	}
+
+	/** A publication that blocks its worker until the latch is released. */
+	private Callable<Void> blockingPublication(final CountDownLatch started, final CountDownLatch release) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				started.countDown();
+				release.await();
+				return null;
+			}
+		};
+	}
+
+	private Callable<Void> countingPublication(final CountDownLatch done) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() {
+				done.countDown();
+				return null;
+			}
+		};
+	}
+
+	@Test
+	public void testDropNewest() throws Exception {
+		PublishingPipeline pipeline = new PublishingPipeline(1, 1, OverflowPolicy.DROP_NEWEST);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+
+		assertTrue(pipeline.submit(blockingPublication(started, release)));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(pipeline.submit(countingPublication(done)));
+		assertFalse(pipeline.submit(countingPublication(done)));
+		assertEquals(1, pipeline.getDroppedCount());
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		pipeline.shutdown();
+	}
+
+	@Test
+	public void testDropOldest() throws Exception {
+		PublishingPipeline pipeline = new PublishingPipeline(1, 1, OverflowPolicy.DROP_OLDEST);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch oldest = new CountDownLatch(1);
+		CountDownLatch newest = new CountDownLatch(1);
+
+		pipeline.submit(blockingPublication(started, release));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(pipeline.submit(countingPublication(oldest)));
+		assertTrue(pipeline.submit(countingPublication(newest)));
+		assertEquals(1, pipeline.getDroppedCount());
+
+		release.countDown();
+		assertTrue(newest.await(5, TimeUnit.SECONDS));
+		assertEquals(1, oldest.getCount());
+		pipeline.shutdown();
+	}
+
+	@Test
+	public void testBlock() throws Exception {
+		final PublishingPipeline pipeline = new PublishingPipeline(1, 1, OverflowPolicy.BLOCK);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+
+		pipeline.submit(blockingPublication(started, release));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(pipeline.submit(countingPublication(done)));
+
+		final CountDownLatch submitted = new CountDownLatch(1);
+		Thread submitter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				pipeline.submit(countingPublication(done));
+				submitted.countDown();
+			}
+		});
+		submitter.start();
+		assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+
+		release.countDown();
+		assertTrue(submitted.await(5, TimeUnit.SECONDS));
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(0, pipeline.getDroppedCount());
+		pipeline.shutdown();
+	}
+
+	@Test
+	public void testBlockIsBounded() throws Exception {
+		PublishingPipeline pipeline = new PublishingPipeline(1, 1, OverflowPolicy.BLOCK, 50, TimeUnit.MILLISECONDS);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+
+		pipeline.submit(blockingPublication(started, release));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(pipeline.submit(countingPublication(done)));
+
+		assertFalse(pipeline.submit(countingPublication(done)));
+		assertEquals(1, pipeline.getDroppedCount());
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		pipeline.shutdown();
+	}
+
+	@Test
+	public void testSlowCandidateDoesNotHoldWorker() throws Exception {
+		PublishingPipeline pipeline = new PublishingPipeline(16, 1, OverflowPolicy.DROP_NEWEST);
+		Scientist.setPublishingPipeline(pipeline);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch fastPublished = new CountDownLatch(1);
+		Scientist.setResultPublisher(new IResultPublisher() {
+			@Override
+			public <T, TClean> void publish(Result<T, TClean> result) {
+				if (result.getExperimentName().equals("fast pipeline experiment")) {
+					fastPublished.countDown();
+				}
+			}
+		});
+
+		Scientist.science("slow pipeline experiment", new ExperimentFunction<Integer, Integer>() {
+			@Override
+			public void apply(IExperiment<Integer, Integer> experiment) {
+				experiment.use(Suppliers.ofInstance(1));
+				experiment.attempt(new Supplier<Integer>() {
+					@Override
+					public Integer get() {
+						try {
+							release.await(5, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return 1;
+					}
+				});
+			}
+		});
+		Scientist.science("fast pipeline experiment", new ExperimentFunction<Integer, Integer>() {
+			@Override
+			public void apply(IExperiment<Integer, Integer> experiment) {
+				experiment.use(Suppliers.ofInstance(1));
+				experiment.attempt(Suppliers.ofInstance(1));
+			}
+		});
+
+		try {
+			assertTrue(fastPublished.await(2, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+		pipeline.shutdown();
+	}
+
+	@Test
+	public void testPublisherFailuresAreCounted() throws Exception {
+		PublishingPipeline pipeline = new PublishingPipeline(16, 1, OverflowPolicy.DROP_NEWEST);
+		Scientist.setPublishingPipeline(pipeline);
+		Scientist.setResultPublisher(new IResultPublisher() {
+			@Override
+			public <T, TClean> void publish(Result<T, TClean> result) {
+				throw new IllegalStateException("Publisher is down");
+			}
+		});
+		final CountDownLatch reported = new CountDownLatch(1);
+
+		Scientist.science("failing publisher experiment", new ExperimentFunction<Integer, Integer>() {
+			@Override
+			public void apply(IExperiment<Integer, Integer> experiment) {
+				experiment.use(Suppliers.ofInstance(1));
+				experiment.attempt(Suppliers.ofInstance(1));
+				experiment.thrown(new DoubleAction<Operation, Exception>() {
+					@Override
+					public Void apply(Operation operation, Exception e) {
+						reported.countDown();
+						return null;
+					}
+				});
+			}
+		});
+
+		assertTrue(reported.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 500 && pipeline.getFailedCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, pipeline.getFailedCount());
+		assertEquals(0, pipeline.getPublishedCount());
+		pipeline.shutdown();
+	}
+}
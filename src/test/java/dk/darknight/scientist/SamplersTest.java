@@ -0,0 +1,57 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SamplersTest {
+	private static final Map<String, Object> NO_CONTEXTS = Collections.emptyMap();
+
+	@Test
+	public void testPercentage() {
+		ISampler never = Samplers.percentage(0);
+		ISampler always = Samplers.percentage(100);
+
+		for (int i = 0; i < 1000; i++) {
+			assertFalse(never.sample("experiment", NO_CONTEXTS));
+			assertTrue(always.sample("experiment", NO_CONTEXTS));
+		}
+	}
+
+	@Test
+	public void testRateLimited() {
+		ISampler sampler = Samplers.rateLimited(0.001, 3);
+
+		int sampled = 0;
+		for (int i = 0; i < 10; i++) {
+			if (sampler.sample("experiment", NO_CONTEXTS)) {
+				sampled++;
+			}
+		}
+
+		assertEquals(3, sampled);
+	}
+
+	@Test
+	public void testByKey() {
+		ISampler sampler = Samplers.byKey("user", 50);
+
+		int sampled = 0;
+		for (int i = 0; i < 1000; i++) {
+			Map<String, Object> contexts = Collections.<String, Object>singletonMap("user", "user-" + i);
+			boolean first = sampler.sample("experiment", contexts);
+			assertEquals(first, sampler.sample("experiment", contexts));
+			if (first) {
+				sampled++;
+			}
+		}
+
+		assertTrue("Sampled " + sampled, sampled > 400 && sampled < 600);
+		assertFalse(sampler.sample("experiment", NO_CONTEXTS));
+	}
+}
@@ -0,0 +1,317 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+
+import dk.darknight.scientist.functions.ExperimentFunction;
+
+public class StreamingComparisonTest {
+	private static Supplier<Iterator<Integer>> range(final int count) {
+		return new Supplier<Iterator<Integer>>() {
+			@Override
+			public Iterator<Integer> get() {
+				return IntStream.range(0, count).iterator();
+			}
+		};
+	}
+
+	private static <E> List<E> consume(Iterator<E> iterator) {
+		List<E> elements = new ArrayList<>();
+		Iterators.addAll(elements, iterator);
+		return elements;
+	}
+
+	/**
+	 * Gets an iterator that takes a permit for each element, so the control
+	 * does not run ahead of a candidate that returns them.
+	 */
+	private static Iterator<Integer> paced(final Iterator<Integer> iterator, final Semaphore permits) {
+		return new Iterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				try {
+					if (!permits.tryAcquire(1, TimeUnit.SECONDS)) {
+						throw new IllegalStateException("The candidate stopped comparing");
+					}
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				return iterator.next();
+			}
+		};
+	}
+
+	/** Gets an iterator that returns a permit for each element. */
+	private static Iterator<Integer> releasing(final Iterator<Integer> iterator, final Semaphore permits) {
+		return new Iterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				permits.release();
+				return iterator.next();
+			}
+		};
+	}
+
+	/** Wait for the workers of an executor to be released. */
+	private static void awaitIdle(ExperimentExecutor executor, boolean collectGarbage) throws InterruptedException {
+		for (int i = 0; i < 500 && executor.getActiveCount() > 0; i++) {
+			if (collectGarbage) {
+				System.gc();
+			}
+			Thread.sleep(10);
+		}
+		assertEquals(0, executor.getActiveCount());
+	}
+
+	@Test
+	public void testMatchingIterators() {
+		// The candidate is never more than half the buffer behind, however the threads are scheduled
+		final Semaphore permits = new Semaphore(StreamingComparison.BUFFER_SIZE / 2);
+		Iterator<Integer> elements = Scientist.scienceIterator("matching iterators",
+				new ExperimentFunction<Iterator<Integer>, Object>() {
+					@Override
+					public void apply(IExperiment<Iterator<Integer>, Object> experiment) {
+						experiment.use(new Supplier<Iterator<Integer>>() {
+							@Override
+							public Iterator<Integer> get() {
+								return paced(range(5000).get(), permits);
+							}
+						});
+						experiment.attempt(new Supplier<Iterator<Integer>>() {
+							@Override
+							public Iterator<Integer> get() {
+								return releasing(range(5000).get(), permits);
+							}
+						});
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		assertEquals(5000, consume(elements).size());
+	}
+
+	@Test
+	public void testSaturatedExecutor() {
+		final ExperimentExecutor executor = new ExperimentExecutor(1, 0);
+		Iterator<Integer> elements = Scientist.scienceIterator("saturated iterators",
+				new ExperimentFunction<Iterator<Integer>, Object>() {
+					@Override
+					public void apply(IExperiment<Iterator<Integer>, Object> experiment) {
+						experiment.use(range(10));
+						experiment.attempt("first", range(9));
+						experiment.attempt("second", range(9));
+						experiment.setExecutor(executor);
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		try {
+			consume(elements);
+			fail("Expected the candidate to mismatch");
+		} catch (MismatchException e) {
+			// The candidate that found no free worker is left out
+			assertEquals(1, e.getResult().getCandidates().size());
+			assertEquals(1, executor.getRejectedCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testClosedIteratorReleasesCandidates() throws Exception {
+		ExperimentExecutor executor = new ExperimentExecutor(1, 0);
+		try {
+			Iterator<Integer> elements = unconsumed(executor);
+			elements.next();
+			((AutoCloseable) elements).close();
+			awaitIdle(executor, false);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDroppedIteratorReleasesCandidates() throws Exception {
+		ExperimentExecutor executor = new ExperimentExecutor(1, 0);
+		try {
+			unconsumed(executor).next();
+			awaitIdle(executor, true);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/** Start comparing iterators that are never consumed to the end. */
+	private static Iterator<Integer> unconsumed(final ExperimentExecutor executor) {
+		return Scientist.scienceIterator("unconsumed iterators", new ExperimentFunction<Iterator<Integer>, Object>() {
+			@Override
+			public void apply(IExperiment<Iterator<Integer>, Object> experiment) {
+				experiment.use(range(10));
+				experiment.attempt(range(10));
+				experiment.setExecutor(executor);
+				// Longer than the test waits, so only abandoning the comparison releases the candidate
+				experiment.setTimeout(1, TimeUnit.MINUTES);
+			}
+		});
+	}
+
+	@Test
+	public void testMismatchedElement() {
+		final Iterator<Integer> elements = Scientist.scienceIterator("mismatched iterators",
+				new ExperimentFunction<Iterator<Integer>, Object>() {
+					@Override
+					public void apply(IExperiment<Iterator<Integer>, Object> experiment) {
+						experiment.use(range(5));
+						experiment.attempt(new Supplier<Iterator<Integer>>() {
+							@Override
+							public Iterator<Integer> get() {
+								return ImmutableList.of(0, 1, 7, 3, 4).iterator();
+							}
+						});
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		List<Integer> consumed = new ArrayList<>();
+		try {
+			while (elements.hasNext()) {
+				consumed.add(elements.next());
+			}
+			fail("Expected the candidate to mismatch");
+		} catch (MismatchException e) {
+			Difference difference = e.getResult().getMismatchedObservations().get(0).getDifference();
+			assertEquals("[2]", difference.getPath());
+			assertEquals(2, difference.getControl());
+			assertEquals(7, difference.getCandidate());
+		}
+		// The caller still gets the control's elements
+		assertEquals(ImmutableList.of(0, 1, 2, 3, 4), consumed);
+	}
+
+	@Test
+	public void testMissingElement() {
+		Iterator<Integer> elements = Scientist.scienceIterator("short iterator",
+				new ExperimentFunction<Iterator<Integer>, Object>() {
+					@Override
+					public void apply(IExperiment<Iterator<Integer>, Object> experiment) {
+						experiment.use(range(3));
+						experiment.attempt(range(2));
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		try {
+			consume(elements);
+			fail("Expected the candidate to mismatch");
+		} catch (MismatchException e) {
+			Difference difference = e.getResult().getMismatchedObservations().get(0).getDifference();
+			assertEquals("[2]", difference.getPath());
+			assertEquals("missing element", difference.getReason());
+		}
+	}
+
+	@Test
+	public void testStreamsWithStructuralComparator() {
+		final AtomicBoolean candidateClosed = new AtomicBoolean();
+		Stream<Object> elements = Scientist.scienceStream("mismatched streams",
+				StructuralComparator.builder().build(), new ExperimentFunction<Stream<Object>, Object>() {
+					@Override
+					public void apply(IExperiment<Stream<Object>, Object> experiment) {
+						experiment.use(new Supplier<Stream<Object>>() {
+							@Override
+							public Stream<Object> get() {
+								return Stream.<Object>of(ImmutableMap.of("a", 1), ImmutableMap.of("a", 2));
+							}
+						});
+						experiment.attempt(new Supplier<Stream<Object>>() {
+							@Override
+							public Stream<Object> get() {
+								return Stream.<Object>of(ImmutableMap.of("a", 1), ImmutableMap.of("a", 3))
+										.onClose(new Runnable() {
+											@Override
+											public void run() {
+												candidateClosed.set(true);
+											}
+										});
+							}
+						});
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		try {
+			elements.collect(Collectors.toList());
+			fail("Expected the candidate to mismatch");
+		} catch (MismatchException e) {
+			Difference difference = e.getResult().getMismatchedObservations().get(0).getDifference();
+			assertEquals("[1][a]", difference.getPath());
+		}
+		assertTrue(candidateClosed.get());
+	}
+
+	@Test
+	public void testCandidateFallingBehind() {
+		final CountDownLatch started = new CountDownLatch(1);
+		Iterator<Integer> elements = Scientist.scienceIterator("slow iterator",
+				new ExperimentFunction<Iterator<Integer>, Object>() {
+					@Override
+					public void apply(IExperiment<Iterator<Integer>, Object> experiment) {
+						experiment.use(range(3 * StreamingComparison.BUFFER_SIZE));
+						experiment.attempt(new Supplier<Iterator<Integer>>() {
+							@Override
+							public Iterator<Integer> get() {
+								try {
+									started.await(1, TimeUnit.SECONDS);
+								} catch (InterruptedException e) {
+									Thread.currentThread().interrupt();
+								}
+								return range(3 * StreamingComparison.BUFFER_SIZE).get();
+							}
+						});
+						experiment.setThrowOnMismatches(true);
+					}
+				});
+
+		try {
+			for (int i = 0; elements.hasNext(); i++) {
+				elements.next();
+				if (i == 2 * StreamingComparison.BUFFER_SIZE) {
+					started.countDown();
+				}
+			}
+			fail("Expected the candidate to mismatch");
+		} catch (MismatchException e) {
+			Observation<?, ?> candidate = e.getResult().getMismatchedObservations().get(0);
+			assertTrue(candidate.getException() instanceof IllegalStateException);
+		}
+	}
+}
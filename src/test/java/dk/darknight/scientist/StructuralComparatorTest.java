@@ -0,0 +1,105 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import dk.darknight.scientist.functions.ExperimentFunction;
+
+public class StructuralComparatorTest {
+	private final StructuralComparator<Object> ordered = StructuralComparator.builder().build();
+	private final StructuralComparator<Object> unordered = StructuralComparator.builder().ignoreOrder(true).build();
+
+	@Test
+	public void testEqual() {
+		Object value = ImmutableMap.of("a", ImmutableList.of(1, 2), "b", new int[] { 3, 4 });
+		Object copy = ImmutableMap.of("a", Arrays.asList(1, 2), "b", new int[] { 3, 4 });
+
+		assertNull(ordered.diff(value, copy));
+		assertEquals(0, ordered.compare(value, copy));
+		assertNull(ordered.diff(null, null));
+	}
+
+	@Test
+	public void testPathToFirstDifference() {
+		Object control = ImmutableMap.of("orders", ImmutableList.of(ImmutableMap.of("lines", new String[] { "x", "y" })));
+		Object candidate = ImmutableMap.of("orders", ImmutableList.of(ImmutableMap.of("lines", new String[] { "x", "z" })));
+
+		Difference difference = ordered.diff(control, candidate);
+		assertEquals("[orders][0][lines][1]", difference.getPath());
+		assertEquals("y", difference.getControl());
+		assertEquals("z", difference.getCandidate());
+		assertEquals(-1, ordered.compare(control, candidate));
+	}
+
+	@Test
+	public void testSizesAreComparedFirst() {
+		Difference difference = ordered.diff(ImmutableList.of(1, 2, 3), ImmutableList.of(1, 2));
+
+		assertEquals("", difference.getPath());
+		assertEquals("size 3 != 2", difference.getReason());
+		assertEquals("<root>: size 3 != 2", difference.getSummary());
+	}
+
+	@Test
+	public void testMissingKey() {
+		Difference difference = ordered.diff(ImmutableMap.of("a", 1), ImmutableMap.of("b", 1));
+
+		assertEquals("[a]", difference.getPath());
+		assertEquals("missing key", difference.getReason());
+	}
+
+	@Test
+	public void testOrder() {
+		List<Integer> control = ImmutableList.of(1, 2, 2, 3);
+		List<Integer> candidate = ImmutableList.of(2, 3, 2, 1);
+
+		assertEquals("[0]", ordered.diff(control, candidate).getPath());
+		assertNull(unordered.diff(control, candidate));
+		assertEquals(2, unordered.diff(control, ImmutableList.of(2, 3, 3, 1)).getControl());
+		// Sets never depend on order
+		assertNull(ordered.diff(ImmutableSet.of(1, 2), ImmutableSet.of(2, 1)));
+	}
+
+	@Test
+	public void testMaximumDepth() {
+		StructuralComparator<Object> shallow = StructuralComparator.builder().maximumDepth(1).build();
+		Object control = ImmutableList.of(ImmutableList.of(1, 2));
+		Object candidate = ImmutableList.of(ImmutableList.of(1, 3));
+
+		assertEquals("[0]", shallow.diff(control, candidate).getPath());
+		assertNull(shallow.diff(control, ImmutableList.of(ImmutableList.of(1, 2))));
+	}
+
+	@Test
+	public void testDifferenceIsAttachedToObservation() {
+		try {
+			Scientist.science("structural experiment", new ExperimentFunction<Map<String, Integer>, Object>() {
+				@Override
+				public void apply(IExperiment<Map<String, Integer>, Object> experiment) {
+					experiment.use(Suppliers.<Map<String, Integer>>ofInstance(ImmutableMap.of("a", 1, "b", 2)));
+					experiment.attempt(Suppliers.<Map<String, Integer>>ofInstance(ImmutableMap.of("a", 1, "b", 3)));
+					experiment.compare(StructuralComparator.<Map<String, Integer>>builder().build());
+					experiment.setThrowOnMismatches(true);
+				}
+			});
+			fail("Expected the candidate to mismatch");
+		} catch (MismatchException e) {
+			Result<?, ?> result = e.getResult();
+			assertNull(result.getControl().getDifference());
+			Difference difference = result.getMismatchedObservations().get(0).getDifference();
+			assertEquals("[b]: values differ (expected '2' but was '3')", difference.getSummary());
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package dk.darknight.scientist;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
+
+import dk.darknight.scientist.functions.DoubleAction;
+
+/**
+ * Builds observations and results for publisher tests, so a publisher can be
+ * handed results directly, without running experiments through the global
+ * result publisher.
+ */
+final class TestResults {
+	/** Rethrows failures, like the default thrown handler of experiments. */
+	static final DoubleAction<Operation, Exception> RETHROW = new DoubleAction<Operation, Exception>() {
+		@Override
+		public Void apply(Operation operation, Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	};
+
+	private TestResults() {
+	}
+
+	/** Create a comparator of values with {@link Object#equals(Object)}. */
+	private static <T> Comparator<T> equality() {
+		return new Comparator<T>() {
+			@Override
+			public int compare(T o1, T o2) {
+				return Objects.equals(o1, o2) ? 0 : -1;
+			}
+		};
+	}
+
+	/** Create an observation of a behavior returning a value. */
+	static <T> Observation<T, T> returning(String name, T value) {
+		return Observation.of(name, Suppliers.ofInstance(value), RETHROW, Functions.<T>identity());
+	}
+
+	/** Create an observation of a behavior throwing an {@link IllegalStateException}. */
+	static <T> Observation<T, T> throwing(String name, final String message) {
+		return Observation.of(name, new Supplier<T>() {
+			@Override
+			public T get() {
+				throw new IllegalStateException(message);
+			}
+		}, RETHROW, Functions.<T>identity());
+	}
+
+	/**
+	 * Create the settings of an experiment whose values are compared with
+	 * {@link Object#equals(Object)}, to be adjusted and passed to
+	 * {@link #result(ExperimentSettings, Map, Observation, Observation...)}.
+	 */
+	static <T> ExperimentSettings<T, T, Function<Object, T>> settings(String experimentName) {
+		ExperimentSettings<T, T, Function<Object, T>> settings = new ExperimentSettings<>();
+		settings.setName(experimentName);
+		settings.setCandidates(new HashMap<String, Function<Object, T>>());
+		settings.setCleaner(Functions.<T>identity());
+		settings.setComparator(TestResults.<T>equality());
+		settings.setThrown(RETHROW);
+		return settings;
+	}
+
+	/** Create a result of an experiment without contexts. */
+	@SafeVarargs
+	static <T> Result<T, T> result(String experimentName, Observation<T, T> control,
+			Observation<T, T>... candidates) {
+		return result(TestResults.<T>settings(experimentName), Collections.<String, Object>emptyMap(), control,
+				candidates);
+	}
+
+	/** Create a result of an experiment. */
+	@SafeVarargs
+	static <T> Result<T, T> result(ExperimentSettings<T, T, Function<Object, T>> settings, Map<String, Object> contexts,
+			Observation<T, T> control, Observation<T, T>... candidates) {
+		List<Observation<T, T>> observations = Lists.newArrayList(control);
+		observations.addAll(Arrays.asList(candidates));
+		return new Result<>(new ExperimentInstance<>(settings), observations, control, contexts);
+	}
+}
@@ -0,0 +1,46 @@
+package dk.darknight.scientist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class VirtualThreadExperimentExecutorTest {
+	@Test
+	public void testExecute() throws Exception {
+		IExperimentExecutor fallback = ExperimentExecutor.DEFAULT;
+		VirtualThreadExperimentExecutor executor = new VirtualThreadExperimentExecutor(10, fallback);
+		final CountDownLatch done = new CountDownLatch(1);
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				done.countDown();
+			}
+		});
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(VirtualThreadExperimentExecutor.isSupported() ? 10 : fallback.getMaximumConcurrency(),
+				executor.getMaximumConcurrency());
+	}
+
+	@Test
+	public void testFallback() {
+		IExperimentExecutor fallback = mock(IExperimentExecutor.class);
+		Runnable command = mock(Runnable.class);
+
+		new VirtualThreadExperimentExecutor(1, fallback).execute(command);
+
+		if (VirtualThreadExperimentExecutor.isSupported()) {
+			verify(fallback, never()).execute(command);
+		} else {
+			verify(fallback).execute(command);
+		}
+	}
+}